@@ -0,0 +1,60 @@
+package gc.grivyzom.gZSociety.config;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sending one language message: rendering a {@link MessageTemplate} against what every send did before,
+ * replacing placeholders in the raw string and parsing it with MiniMessage.
+ * Run with {@code gradle jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageRenderBenchmark {
+
+    private static final MiniMessage MINI_MESSAGE = MiniMessage.miniMessage();
+    // From lang/en.yml, with {cmd} resolved as the language pack does on load
+    private static final String REQUEST_RECEIVED = "<green><white>{player}</white> sent you a friend request! "
+            + "Use <yellow>/friend accept {player}</yellow></green>";
+    private static final String FRIEND_LIST_HEADER = "<yellow>--- Your Friends ---</yellow>";
+    private static final String PLAYER = "Steve";
+
+    private MessageTemplate requestReceived;
+    private MessageTemplate friendListHeader;
+
+    @Setup
+    public void setUp() {
+        requestReceived = MessageTemplate.parse(REQUEST_RECEIVED);
+        friendListHeader = MessageTemplate.parse(FRIEND_LIST_HEADER);
+    }
+
+    @Benchmark
+    public Component parseWithPlaceholder() {
+        return MINI_MESSAGE.deserialize(REQUEST_RECEIVED.replace("{player}", PLAYER));
+    }
+
+    @Benchmark
+    public Component renderWithPlaceholder() {
+        return requestReceived.render("{player}", PLAYER);
+    }
+
+    @Benchmark
+    public Component parseWithoutPlaceholders() {
+        return MINI_MESSAGE.deserialize(FRIEND_LIST_HEADER);
+    }
+
+    @Benchmark
+    public Component renderWithoutPlaceholders() {
+        return friendListHeader.render();
+    }
+}
@@ -0,0 +1,96 @@
+package gc.grivyzom.gZSociety.manager;
+
+import com.velocitypowered.api.proxy.Player;
+import gc.grivyzom.gZSociety.storage.InMemoryStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.spongepowered.configurate.BasicConfigurationNode;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Online name completion for one keystroke: the sorted name index in {@link PlayerManager}
+ * against the loop over every online player it replaced.
+ * Run with {@code gradle jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NameCompletionBenchmark {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_";
+    private static final int MAX_SUGGESTIONS = 50;
+
+    @Param({"100", "1000", "5000"})
+    private int players;
+
+    // Typed so far: nothing, the first letter or the first two letters of a name
+    @Param({"0", "1", "2"})
+    private int prefixLength;
+
+    private PlayerManager playerManager;
+    private List<String> usernames;
+    private String prefix;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        playerManager = new PlayerManager(new InMemoryStorage(Runnable::run),
+                new ProfileCache(new InMemoryStorage(Runnable::run), BasicConfigurationNode.root()));
+        usernames = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            StringBuilder name = new StringBuilder();
+            int length = 3 + random.nextInt(14);
+            for (int c = 0; c < length; c++) {
+                name.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            usernames.add(name.toString());
+            playerManager.handlePlayerJoin(player(UUID.randomUUID(), name.toString()));
+        }
+        prefix = usernames.get(players / 2).substring(0, prefixLength);
+    }
+
+    /**
+     * What PlayerSuggestionProvider did before the index: lower-case every online name on every keystroke.
+     */
+    @Benchmark
+    public List<String> scanOnlinePlayers() {
+        String remaining = prefix.toLowerCase(Locale.ROOT);
+        List<String> names = new ArrayList<>();
+        for (String username : usernames) {
+            if (username.toLowerCase().startsWith(remaining)) {
+                names.add(username);
+            }
+        }
+        return names;
+    }
+
+    @Benchmark
+    public List<String> prefixIndex() {
+        return playerManager.getOnlineNamesStartingWith(prefix, null, MAX_SUGGESTIONS);
+    }
+
+    /**
+     * A player with only what joining reads: the UUID and the username.
+     */
+    private static Player player(UUID playerId, String username) {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getUniqueId" -> playerId;
+                    case "getUsername" -> username;
+                    default -> null;
+                });
+    }
+}
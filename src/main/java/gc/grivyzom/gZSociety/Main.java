@@ -10,6 +10,7 @@ import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
 import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
+import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import gc.grivyzom.gZSociety.commands.FriendCommand;
 import gc.grivyzom.gZSociety.commands.SocietyAdminCommand;
@@ -17,13 +18,23 @@ import gc.grivyzom.gZSociety.config.ConfigManager;
 import gc.grivyzom.gZSociety.config.LanguageManager;
 import gc.grivyzom.gZSociety.listeners.FriendNotificationListener;
 import gc.grivyzom.gZSociety.listeners.PlayerConnectionListener;
+import gc.grivyzom.gZSociety.manager.AutosaveScheduler;
+import gc.grivyzom.gZSociety.manager.NotificationDispatcher;
 import gc.grivyzom.gZSociety.manager.PlayerManager;
+import gc.grivyzom.gZSociety.manager.ProfileCache;
+import gc.grivyzom.gZSociety.storage.FileStorage;
 import gc.grivyzom.gZSociety.storage.InMemoryStorage;
 import gc.grivyzom.gZSociety.storage.SQLStorage;
 import gc.grivyzom.gZSociety.storage.Storage;
+import gc.grivyzom.gZSociety.storage.StorageExecutor;
+import gc.grivyzom.gZSociety.storage.WriteBehindStorage;
 import org.slf4j.Logger;
+import org.spongepowered.configurate.ConfigurationNode;
 
 import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Plugin(id = "gzsociety", name = "GZ-Society", version = "1.2.0-SNAPSHOT", description = "A professional society and friends plugin.", authors = {
         "GrivyZom" })
@@ -36,7 +47,10 @@ public class Main {
     private ConfigManager configManager;
     private LanguageManager languageManager;
     private PlayerManager playerManager;
+    private NotificationDispatcher notificationDispatcher;
+    private AutosaveScheduler autosaveScheduler;
     private Storage storage;
+    private StorageExecutor storageExecutor;
 
     @Inject
     public Main(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
@@ -62,7 +76,7 @@ public class Main {
         // 2. Initialize Language Manager
         this.languageManager = new LanguageManager(dataDirectory, logger);
         try {
-            languageManager.load(configManager.getLanguage());
+            languageManager.load(configManager.getLanguage(), configManager.isPerPlayerLanguage());
             logger.info("Language '{}' loaded successfully.", configManager.getLanguage());
         } catch (Exception e) {
             logger.error("Failed to load language files!", e);
@@ -72,25 +86,75 @@ public class Main {
         // 3. Initialize Storage
         String storageType = configManager.getStorageType();
         logger.info("Using storage type: " + storageType);
+
+        ConfigurationNode executorSettings = configManager.getStorageExecutorSettings();
+        int threads = executorSettings.node("threads").getInt(0);
+        if (threads <= 0) {
+            // One thread per pooled connection, more would only wait for a connection
+            threads = configManager.getMySqlSettings().node("pool-settings", "max-pool-size").getInt(10);
+        }
+        this.storageExecutor = StorageExecutor.create(executorSettings.node("type").getString("platform"),
+                threads, logger);
+        logger.info("Storage executor uses {}.", storageExecutor.getDescription());
+
         if (storageType.equalsIgnoreCase("mysql")) {
+            SQLStorage sqlStorage = null;
             try {
-                SQLStorage sqlStorage = new SQLStorage(configManager.getMySqlSettings());
+                sqlStorage = new SQLStorage(configManager.getMySqlSettings(), storageExecutor, logger);
                 sqlStorage.initDatabase();
                 this.storage = sqlStorage;
                 logger.info("MySQL storage initialized successfully.");
+            } catch (SQLException e) {
+                // Every query expects the latest schema, running on would fail them all
+                logger.error("Failed to prepare the MySQL schema! Disabling plugin.", e);
+                sqlStorage.close();
+                storageExecutor.shutdown(5, TimeUnit.SECONDS);
+                return;
             } catch (Exception e) {
                 logger.error("Failed to initialize MySQL storage! Falling back to in-memory.", e);
-                this.storage = new InMemoryStorage();
+                this.storage = new InMemoryStorage(storageExecutor);
+            }
+        } else if (storageType.equalsIgnoreCase("file")) {
+            try {
+                FileStorage fileStorage = new FileStorage(configManager.getFileSettings(), dataDirectory,
+                        storageExecutor, logger);
+                fileStorage.open();
+                this.storage = fileStorage;
+                logger.info("File storage initialized successfully.");
+            } catch (Exception e) {
+                logger.error("Failed to initialize file storage! Falling back to in-memory.", e);
+                this.storage = new InMemoryStorage(storageExecutor);
             }
         } else {
-            this.storage = new InMemoryStorage();
+            this.storage = new InMemoryStorage(storageExecutor);
+        }
+
+        if (configManager.getWriteBehindSettings().node("enabled").getBoolean(true)) {
+            this.storage = new WriteBehindStorage(storage, configManager.getWriteBehindSettings(), logger);
+            logger.info("Write-behind save buffering enabled.");
         }
 
         // 4. Initialize Managers
-        this.playerManager = new PlayerManager(storage);
+        this.playerManager = new PlayerManager(storage,
+                new ProfileCache(storage, configManager.getProfileCacheSettings()));
+        // Players that are already online (e.g. the plugin was loaded late) are loaded in bulk
+        playerManager.loadPlayers(server.getAllPlayers()).exceptionally(error -> {
+            logger.error("Failed to load the online players in bulk, loading them one by one", error);
+            for (Player player : server.getAllPlayers()) {
+                playerManager.handlePlayerJoin(player);
+            }
+            return null;
+        });
+        this.notificationDispatcher = new NotificationDispatcher(this, configManager.getNotificationSettings());
+        if (configManager.getAutosaveSettings().node("enabled").getBoolean(true)) {
+            this.autosaveScheduler = new AutosaveScheduler(this, playerManager, storage,
+                    configManager.getAutosaveSettings());
+            autosaveScheduler.start();
+        }
 
         // 5. Register Listeners
-        server.getEventManager().register(this, new PlayerConnectionListener(playerManager));
+        server.getEventManager().register(this, new PlayerConnectionListener(playerManager, languageManager,
+                configManager.getLoginWaitMillis()));
         server.getEventManager().register(this, new FriendNotificationListener(this));
 
         // 6. Register Commands with localized aliases
@@ -128,9 +192,49 @@ public class Main {
     @Subscribe
     public void onProxyShutdown(ProxyShutdownEvent event) {
         logger.info("GZ-Society is disabling...");
-        if (storage instanceof SQLStorage) {
-            ((SQLStorage) storage).close();
-            logger.info("Database connection pool closed.");
+        if (notificationDispatcher != null) {
+            notificationDispatcher.shutdown();
+        }
+        if (autosaveScheduler != null) {
+            // Everyone is saved below anyway
+            autosaveScheduler.shutdown();
+        }
+        if (storageExecutor == null) {
+            return; // Disabled before storage was set up
+        }
+        ConfigurationNode settings = configManager.getShutdownSettings();
+        long timeoutMillis = Math.max(0, settings.node("flush-timeout-ms").getLong(10000));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        if (storage != null) {
+            flushPlayers(Math.max(1, settings.node("batch-size").getInt(100)), timeoutMillis);
+            // Flushes any buffered saves left, within what remains of the deadline, before releasing the pool
+            storage.close(remainingMillis(deadline));
+            logger.info("Storage closed.");
+        }
+        storageExecutor.shutdown(remainingMillis(deadline), TimeUnit.MILLISECONDS);
+    }
+
+    private static long remainingMillis(long deadline) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    /**
+     * Saves every player still in memory before storage closes, bounded by the shutdown deadline.
+     */
+    private void flushPlayers(int batchSize, long timeoutMillis) {
+        long start = System.nanoTime();
+        try {
+            int flushed = playerManager.saveAll(batchSize).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            logger.info("Saved {} players in {} ms.", flushed,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (TimeoutException e) {
+            logger.warn("Saving {} players did not finish within {} ms, recent changes may be lost.",
+                    playerManager.getLoadedPlayers().size(), timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while saving players on shutdown", e);
+        } catch (Exception e) {
+            logger.error("Failed to save online players on shutdown", e);
         }
     }
 
@@ -139,10 +243,25 @@ public class Main {
         return playerManager;
     }
 
+    public NotificationDispatcher getNotificationDispatcher() {
+        return notificationDispatcher;
+    }
+
+    /**
+     * @return The autosave scheduler, or null if autosave is disabled.
+     */
+    public AutosaveScheduler getAutosaveScheduler() {
+        return autosaveScheduler;
+    }
+
     public Storage getStorage() {
         return storage;
     }
 
+    public StorageExecutor getStorageExecutor() {
+        return storageExecutor;
+    }
+
     public ConfigManager getConfigManager() {
         return configManager;
     }
@@ -12,29 +12,51 @@ import gc.grivyzom.gZSociety.Main;
 import gc.grivyzom.gZSociety.commands.suggestion.FriendSuggestionProvider;
 import gc.grivyzom.gZSociety.commands.suggestion.IncomingRequestSuggestionProvider;
 import gc.grivyzom.gZSociety.commands.suggestion.PlayerSuggestionProvider;
+import gc.grivyzom.gZSociety.config.MessageTemplate;
 import gc.grivyzom.gZSociety.objects.SocialPlayer;
+import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public final class FriendCommand {
 
     private static final MiniMessage MINI_MESSAGE = MiniMessage.miniMessage();
 
+    // Friend list line parts, parsed once
+    private static final Component BEST_FRIEND_PREFIX = MINI_MESSAGE.deserialize("<gold>★</gold> ");
+    private static final Component ONLINE_STATUS = MINI_MESSAGE.deserialize("<green>●</green>");
+    private static final Component OFFLINE_STATUS = MINI_MESSAGE.deserialize("<gray>○</gray>");
+
+    // Request list lines, parsed once
+    private static final Component INCOMING_HEADER = MINI_MESSAGE.deserialize("<yellow>Incoming:</yellow>");
+    private static final Component NO_INCOMING = MINI_MESSAGE.deserialize("<gray>No incoming requests.</gray>");
+    private static final MessageTemplate INCOMING_LINE =
+            MessageTemplate.parse("  <green>• {player}</green> <gray>[/friend accept {player}]</gray>");
+    private static final Component OUTGOING_HEADER = MINI_MESSAGE.deserialize("<yellow>Outgoing:</yellow>");
+    private static final Component NO_OUTGOING = MINI_MESSAGE.deserialize("<gray>No outgoing requests.</gray>");
+    private static final MessageTemplate OUTGOING_LINE =
+            MessageTemplate.parse("  <aqua>• {player}</aqua> <gray>(pending)</gray>");
+
     public static BrigadierCommand create(Main plugin) {
         LiteralCommandNode<CommandSource> node = LiteralArgumentBuilder.<CommandSource>literal("friend")
                 // Base command: /friend (shows help)
                 .executes(ctx -> {
-                    String helpMessage = plugin.getLanguageManager().getMessage("friend-help");
-                    ctx.getSource().sendMessage(MINI_MESSAGE.deserialize(helpMessage));
+                    ctx.getSource().sendMessage(plugin.getLanguageManager().render(ctx.getSource(), "friend-help"));
                     return Command.SINGLE_SUCCESS;
                 })
                 // Subcommand: /friend request <player>
                 .then(LiteralArgumentBuilder.<CommandSource>literal("request")
                         .then(RequiredArgumentBuilder
                                 .<CommandSource, String>argument("player", StringArgumentType.word())
-                                .suggests(PlayerSuggestionProvider.otherPlayers(plugin.getServer()))
+                                .suggests(PlayerSuggestionProvider.otherPlayers(plugin.getPlayerManager(),
+                                        plugin.getConfigManager().getMaxSuggestions()))
                                 .executes(ctx -> executeRequest(ctx.getSource(),
                                         StringArgumentType.getString(ctx, "player"), plugin)))
                         .executes(ctx -> {
@@ -129,71 +151,75 @@ public final class FriendCommand {
         }
 
         if (player.getUsername().equalsIgnoreCase(targetName)) {
-            source.sendMessage(
-                    MINI_MESSAGE.deserialize(plugin.getLanguageManager().getMessage("friend-cannot-add-self")));
+            source.sendMessage(plugin.getLanguageManager().render(source, "friend-cannot-add-self"));
             return Command.SINGLE_SUCCESS;
         }
 
-        Optional<Player> targetOptional = plugin.getServer().getPlayer(targetName);
-        if (targetOptional.isEmpty()) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("player-not-found").replace("{player}", targetName)));
+        SocialPlayer socialPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
+        if (socialPlayer == null) {
+            source.sendMessage(MINI_MESSAGE.deserialize("<red>Your data is still loading. Please try again.</red>"));
             return Command.SINGLE_SUCCESS;
         }
 
-        Player target = targetOptional.get();
-        SocialPlayer socialPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
-        SocialPlayer targetSocialPlayer = plugin.getPlayerManager().getPlayer(target.getUniqueId());
+        // The target may be offline, as long as they joined before
+        resolvePlayerId(targetName, plugin).thenAccept(targetUUID -> {
+            if (targetUUID == null) {
+                source.sendMessage(
+                        plugin.getLanguageManager().render(source, "player-not-found", "{player}", targetName));
+            } else {
+                sendRequest(player, socialPlayer, targetUUID, targetName, plugin);
+            }
+        }).exceptionally(error -> reportFailure(source, "send a friend request to " + targetName, error, plugin));
+        return Command.SINGLE_SUCCESS;
+    }
 
-        if (socialPlayer == null || targetSocialPlayer == null) {
-            source.sendMessage(MINI_MESSAGE.deserialize("<red>Player data is still loading. Please try again.</red>"));
-            return Command.SINGLE_SUCCESS;
-        }
+    private static void sendRequest(Player player, SocialPlayer socialPlayer, UUID targetUUID, String targetName,
+            Main plugin) {
+        Optional<Player> target = plugin.getServer().getPlayer(targetUUID);
+        String displayName = target.map(Player::getUsername).orElse(targetName);
 
-        // Check if target has blocked us
-        if (targetSocialPlayer.hasBlocked(player.getUniqueId())) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("player-not-found").replace("{player}", targetName)));
-            return Command.SINGLE_SUCCESS;
+        // Check if target has blocked us (only known while they are loaded)
+        SocialPlayer targetSocialPlayer = plugin.getPlayerManager().getPlayer(targetUUID);
+        if (targetSocialPlayer != null && targetSocialPlayer.hasBlocked(player.getUniqueId())) {
+            player.sendMessage(plugin.getLanguageManager().render(player, "player-not-found", "{player}", targetName));
+            return;
         }
 
         // Check if already friends
-        if (socialPlayer.getFriends().contains(target.getUniqueId())) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("friend-already-added").replace("{player}",
-                            target.getUsername())));
-            return Command.SINGLE_SUCCESS;
+        if (socialPlayer.getFriends().contains(targetUUID)) {
+            player.sendMessage(
+                    plugin.getLanguageManager().render(player, "friend-already-added", "{player}", displayName));
+            return;
         }
 
         // Check if already sent request
-        if (socialPlayer.hasSentRequestTo(target.getUniqueId())) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("request-already-sent").replace("{player}",
-                            target.getUsername())));
-            return Command.SINGLE_SUCCESS;
+        if (socialPlayer.hasSentRequestTo(targetUUID)) {
+            player.sendMessage(
+                    plugin.getLanguageManager().render(player, "request-already-sent", "{player}", displayName));
+            return;
         }
 
         // Check if target already sent us a request (auto-accept)
-        if (socialPlayer.hasPendingRequestFrom(target.getUniqueId())) {
-            return executeAccept(source, targetName, plugin);
-        }
-
-        // Send request
-        socialPlayer.sendRequest(target.getUniqueId());
-        targetSocialPlayer.receiveRequest(player.getUniqueId());
-
-        // Save both players
-        plugin.getStorage().savePlayer(socialPlayer);
-        plugin.getStorage().savePlayer(targetSocialPlayer);
-
-        // Notify both players
-        source.sendMessage(MINI_MESSAGE.deserialize(
-                plugin.getLanguageManager().getMessage("request-sent").replace("{player}", target.getUsername())));
-        target.sendMessage(MINI_MESSAGE.deserialize(
-                plugin.getLanguageManager().getMessage("request-received").replace("{player}", player.getUsername())));
-
-        plugin.getLogger().info("{} sent friend request to {}", player.getUsername(), target.getUsername());
-        return Command.SINGLE_SUCCESS;
+        if (socialPlayer.hasPendingRequestFrom(targetUUID)) {
+            acceptRequest(player, socialPlayer, targetUUID, displayName, plugin);
+            return;
+        }
+
+        // Send request, an offline target only gets the row written
+        UUID playerUUID = player.getUniqueId();
+        plugin.getPlayerManager().changeRelationship(
+                playerUUID, self -> self.sendRequest(targetUUID),
+                targetUUID, other -> other.receiveRequest(playerUUID),
+                storage -> storage.createRequest(playerUUID, targetUUID)).thenRun(() -> {
+                    // Notify both players once it is stored
+                    player.sendMessage(
+                            plugin.getLanguageManager().render(player, "request-sent", "{player}", displayName));
+                    target.ifPresent(online -> online.sendMessage(plugin.getLanguageManager()
+                            .render(online, "request-received", "{player}", player.getUsername())));
+
+                    plugin.getLogger().info("{} sent friend request to {}", player.getUsername(), displayName);
+                }).exceptionally(error -> reportFailure(player, "send a friend request to " + displayName, error,
+                        plugin));
     }
 
     // ==================== ACCEPT REQUEST ====================
@@ -210,46 +236,54 @@ public final class FriendCommand {
             return Command.SINGLE_SUCCESS;
         }
 
-        // Find sender by name
-        UUID senderUUID = findPlayerUUID(senderName, plugin);
-        if (senderUUID == null) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("player-not-found").replace("{player}", senderName)));
-            return Command.SINGLE_SUCCESS;
-        }
+        // Find sender by name, they may be offline
+        resolvePlayerId(senderName, plugin).thenAccept(senderUUID -> {
+            if (senderUUID == null) {
+                source.sendMessage(
+                        plugin.getLanguageManager().render(source, "player-not-found", "{player}", senderName));
+            } else {
+                acceptRequest(player, socialPlayer, senderUUID, senderName, plugin);
+            }
+        }).exceptionally(error -> reportFailure(source, "accept the friend request of " + senderName, error, plugin));
+        return Command.SINGLE_SUCCESS;
+    }
 
+    private static void acceptRequest(Player player, SocialPlayer socialPlayer, UUID senderUUID, String senderName,
+            Main plugin) {
         // Check if we have a request from this player
         if (!socialPlayer.hasPendingRequestFrom(senderUUID)) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("request-not-found").replace("{player}", senderName)));
-            return Command.SINGLE_SUCCESS;
-        }
-
-        // Accept request
-        socialPlayer.acceptRequest(senderUUID);
-        socialPlayer.addFriend(senderUUID);
-
-        // Update sender's data
-        SocialPlayer senderSocialPlayer = plugin.getPlayerManager().getPlayer(senderUUID);
-        if (senderSocialPlayer != null) {
-            senderSocialPlayer.cancelRequest(player.getUniqueId());
-            senderSocialPlayer.addFriend(player.getUniqueId());
-            plugin.getStorage().savePlayer(senderSocialPlayer);
-
-            // Notify sender if online
-            Optional<Player> senderOnline = plugin.getServer().getPlayer(senderUUID);
-            senderOnline.ifPresent(sender -> sender.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("request-accepted-notify").replace("{player}",
-                            player.getUsername()))));
-        }
-
-        plugin.getStorage().savePlayer(socialPlayer);
-
-        source.sendMessage(MINI_MESSAGE.deserialize(
-                plugin.getLanguageManager().getMessage("request-accepted").replace("{player}", senderName)));
-
-        plugin.getLogger().info("{} accepted friend request from {}", player.getUsername(), senderName);
-        return Command.SINGLE_SUCCESS;
+            player.sendMessage(plugin.getLanguageManager().render(player, "request-not-found", "{player}", senderName));
+            return;
+        }
+
+        // Accept request on both sides; an offline sender only gets their rows updated
+        UUID playerUUID = player.getUniqueId();
+        plugin.getPlayerManager().changeRelationship(
+                senderUUID, sender -> {
+                    sender.cancelRequest(playerUUID);
+                    sender.denyRequest(playerUUID);
+                    sender.addFriend(playerUUID);
+                },
+                playerUUID, self -> {
+                    self.acceptRequest(senderUUID);
+                    self.addFriend(senderUUID);
+                    if (self.hasSentRequestTo(senderUUID)) {
+                        self.cancelRequest(senderUUID);
+                    }
+                },
+                storage -> storage.resolveRequest(senderUUID, playerUUID, true)).thenRun(() -> {
+                    // Notify sender if online
+                    Optional<Player> senderOnline = plugin.getServer().getPlayer(senderUUID);
+                    senderOnline.ifPresent(sender -> sender.sendMessage(
+                            plugin.getLanguageManager().render(sender, "request-accepted-notify", "{player}",
+                                    player.getUsername())));
+
+                    player.sendMessage(
+                            plugin.getLanguageManager().render(player, "request-accepted", "{player}", senderName));
+
+                    plugin.getLogger().info("{} accepted friend request from {}", player.getUsername(), senderName);
+                }).exceptionally(error -> reportFailure(player, "accept the friend request of " + senderName, error,
+                        plugin));
     }
 
     // ==================== DENY REQUEST ====================
@@ -266,32 +300,32 @@ public final class FriendCommand {
             return Command.SINGLE_SUCCESS;
         }
 
-        UUID senderUUID = findPlayerUUID(senderName, plugin);
-        if (senderUUID == null) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("player-not-found").replace("{player}", senderName)));
-            return Command.SINGLE_SUCCESS;
-        }
-
-        if (!socialPlayer.denyRequest(senderUUID)) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("request-not-found").replace("{player}", senderName)));
-            return Command.SINGLE_SUCCESS;
-        }
-
-        // Also remove from sender's outgoing
-        SocialPlayer senderSocialPlayer = plugin.getPlayerManager().getPlayer(senderUUID);
-        if (senderSocialPlayer != null) {
-            senderSocialPlayer.cancelRequest(player.getUniqueId());
-            plugin.getStorage().savePlayer(senderSocialPlayer);
-        }
-
-        plugin.getStorage().savePlayer(socialPlayer);
+        resolvePlayerId(senderName, plugin).thenAccept(senderUUID -> {
+            if (senderUUID == null) {
+                source.sendMessage(
+                        plugin.getLanguageManager().render(source, "player-not-found", "{player}", senderName));
+                return;
+            }
 
-        source.sendMessage(MINI_MESSAGE.deserialize(
-                plugin.getLanguageManager().getMessage("request-denied").replace("{player}", senderName)));
+            if (!socialPlayer.hasPendingRequestFrom(senderUUID)) {
+                source.sendMessage(
+                        plugin.getLanguageManager().render(source, "request-not-found", "{player}", senderName));
+                return;
+            }
 
-        plugin.getLogger().info("{} denied friend request from {}", player.getUsername(), senderName);
+            // Also remove from sender's outgoing, an offline sender only gets the row deleted
+            UUID playerUUID = player.getUniqueId();
+            plugin.getPlayerManager().changeRelationship(
+                    senderUUID, sender -> sender.cancelRequest(playerUUID),
+                    playerUUID, self -> self.denyRequest(senderUUID),
+                    storage -> storage.resolveRequest(senderUUID, playerUUID, false)).thenRun(() -> {
+                        source.sendMessage(
+                                plugin.getLanguageManager().render(source, "request-denied", "{player}", senderName));
+
+                        plugin.getLogger().info("{} denied friend request from {}", player.getUsername(), senderName);
+                    }).exceptionally(error -> reportFailure(source, "deny the friend request of " + senderName, error,
+                            plugin));
+        }).exceptionally(error -> reportFailure(source, "deny the friend request of " + senderName, error, plugin));
         return Command.SINGLE_SUCCESS;
     }
 
@@ -309,30 +343,35 @@ public final class FriendCommand {
             return Command.SINGLE_SUCCESS;
         }
 
-        source.sendMessage(MINI_MESSAGE.deserialize(plugin.getLanguageManager().getMessage("requests-list-header")));
-
-        // Incoming requests
-        if (socialPlayer.getIncomingRequests().isEmpty()) {
-            source.sendMessage(MINI_MESSAGE.deserialize("<gray>No incoming requests.</gray>"));
-        } else {
-            source.sendMessage(MINI_MESSAGE.deserialize("<yellow>Incoming:</yellow>"));
-            for (UUID senderId : socialPlayer.getIncomingRequests()) {
-                String name = getPlayerName(senderId, plugin);
-                source.sendMessage(MINI_MESSAGE
-                        .deserialize("  <green>• " + name + "</green> <gray>[/friend accept " + name + "]</gray>"));
+        List<UUID> incoming = new ArrayList<>(socialPlayer.getIncomingRequests());
+        List<UUID> outgoing = new ArrayList<>(socialPlayer.getOutgoingRequests());
+        List<UUID> playerIds = new ArrayList<>(incoming);
+        playerIds.addAll(outgoing);
+
+        // Offline names are resolved in one bulk lookup before printing
+        plugin.getPlayerManager().getPlayerNames(playerIds).thenAccept(names -> {
+            source.sendMessage(plugin.getLanguageManager().render(source, "requests-list-header"));
+
+            // Incoming requests
+            if (incoming.isEmpty()) {
+                source.sendMessage(NO_INCOMING);
+            } else {
+                source.sendMessage(INCOMING_HEADER);
+                for (UUID senderId : incoming) {
+                    source.sendMessage(INCOMING_LINE.render("{player}", getPlayerName(senderId, names)));
+                }
             }
-        }
 
-        // Outgoing requests
-        if (socialPlayer.getOutgoingRequests().isEmpty()) {
-            source.sendMessage(MINI_MESSAGE.deserialize("<gray>No outgoing requests.</gray>"));
-        } else {
-            source.sendMessage(MINI_MESSAGE.deserialize("<yellow>Outgoing:</yellow>"));
-            for (UUID receiverId : socialPlayer.getOutgoingRequests()) {
-                String name = getPlayerName(receiverId, plugin);
-                source.sendMessage(MINI_MESSAGE.deserialize("  <aqua>• " + name + "</aqua> <gray>(pending)</gray>"));
+            // Outgoing requests
+            if (outgoing.isEmpty()) {
+                source.sendMessage(NO_OUTGOING);
+            } else {
+                source.sendMessage(OUTGOING_HEADER);
+                for (UUID receiverId : outgoing) {
+                    source.sendMessage(OUTGOING_LINE.render("{player}", getPlayerName(receiverId, names)));
+                }
             }
-        }
+        }).exceptionally(error -> reportFailure(source, "list friend requests", error, plugin));
 
         return Command.SINGLE_SUCCESS;
     }
@@ -351,33 +390,31 @@ public final class FriendCommand {
             return Command.SINGLE_SUCCESS;
         }
 
-        UUID targetUUID = findPlayerUUID(targetName, plugin);
-        if (targetUUID == null) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("player-not-found").replace("{player}", targetName)));
-            return Command.SINGLE_SUCCESS;
-        }
-
-        if (!socialPlayer.getFriends().contains(targetUUID)) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("friend-not-in-list").replace("{player}", targetName)));
-            return Command.SINGLE_SUCCESS;
-        }
-
-        socialPlayer.removeFriend(targetUUID);
-        plugin.getStorage().savePlayer(socialPlayer);
-
-        // Also remove from target's list if online
-        SocialPlayer targetSocialPlayer = plugin.getPlayerManager().getPlayer(targetUUID);
-        if (targetSocialPlayer != null) {
-            targetSocialPlayer.removeFriend(player.getUniqueId());
-            plugin.getStorage().savePlayer(targetSocialPlayer);
-        }
+        resolvePlayerId(targetName, plugin).thenAccept(targetUUID -> {
+            if (targetUUID == null) {
+                source.sendMessage(
+                        plugin.getLanguageManager().render(source, "player-not-found", "{player}", targetName));
+                return;
+            }
 
-        source.sendMessage(MINI_MESSAGE.deserialize(
-                plugin.getLanguageManager().getMessage("friend-removed").replace("{player}", targetName)));
+            if (!socialPlayer.getFriends().contains(targetUUID)) {
+                source.sendMessage(
+                        plugin.getLanguageManager().render(source, "friend-not-in-list", "{player}", targetName));
+                return;
+            }
 
-        plugin.getLogger().info("{} removed {} from friends", player.getUsername(), targetName);
+            // Remove from both lists, an offline target only gets the row deleted
+            UUID playerUUID = player.getUniqueId();
+            plugin.getPlayerManager().changeRelationship(
+                    playerUUID, self -> self.removeFriend(targetUUID),
+                    targetUUID, other -> other.removeFriend(playerUUID),
+                    storage -> storage.deleteFriendship(playerUUID, targetUUID)).thenRun(() -> {
+                        source.sendMessage(
+                                plugin.getLanguageManager().render(source, "friend-removed", "{player}", targetName));
+
+                        plugin.getLogger().info("{} removed {} from friends", player.getUsername(), targetName);
+                    }).exceptionally(error -> reportFailure(source, "remove friend " + targetName, error, plugin));
+        }).exceptionally(error -> reportFailure(source, "remove friend " + targetName, error, plugin));
         return Command.SINGLE_SUCCESS;
     }
 
@@ -395,32 +432,33 @@ public final class FriendCommand {
             return Command.SINGLE_SUCCESS;
         }
 
-        UUID targetUUID = findPlayerUUID(targetName, plugin);
-        if (targetUUID == null) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("player-not-found").replace("{player}", targetName)));
-            return Command.SINGLE_SUCCESS;
-        }
+        // Friends may be offline
+        resolvePlayerId(targetName, plugin).thenAccept(targetUUID -> {
+            if (targetUUID == null) {
+                source.sendMessage(
+                        plugin.getLanguageManager().render(source, "player-not-found", "{player}", targetName));
+                return;
+            }
 
-        if (!socialPlayer.getFriends().contains(targetUUID)) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("not-a-friend").replace("{player}", targetName)));
-            return Command.SINGLE_SUCCESS;
-        }
+            if (!socialPlayer.getFriends().contains(targetUUID)) {
+                source.sendMessage(plugin.getLanguageManager().render(source, "not-a-friend", "{player}", targetName));
+                return;
+            }
 
-        if (socialPlayer.isBestFriend(targetUUID)) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("already-best-friend").replace("{player}", targetName)));
-            return Command.SINGLE_SUCCESS;
-        }
+            if (socialPlayer.isBestFriend(targetUUID)) {
+                source.sendMessage(
+                        plugin.getLanguageManager().render(source, "already-best-friend", "{player}", targetName));
+                return;
+            }
 
-        socialPlayer.addBestFriend(targetUUID);
-        plugin.getStorage().savePlayer(socialPlayer);
+            socialPlayer.addBestFriend(targetUUID);
+            plugin.getStorage().savePlayer(socialPlayer);
 
-        source.sendMessage(MINI_MESSAGE.deserialize(
-                plugin.getLanguageManager().getMessage("best-friend-added").replace("{player}", targetName)));
+            source.sendMessage(
+                    plugin.getLanguageManager().render(source, "best-friend-added", "{player}", targetName));
 
-        plugin.getLogger().info("{} marked {} as best friend", player.getUsername(), targetName);
+            plugin.getLogger().info("{} marked {} as best friend", player.getUsername(), targetName);
+        }).exceptionally(error -> reportFailure(source, "mark " + targetName + " as best friend", error, plugin));
         return Command.SINGLE_SUCCESS;
     }
 
@@ -438,26 +476,27 @@ public final class FriendCommand {
             return Command.SINGLE_SUCCESS;
         }
 
-        UUID targetUUID = findPlayerUUID(targetName, plugin);
-        if (targetUUID == null) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("player-not-found").replace("{player}", targetName)));
-            return Command.SINGLE_SUCCESS;
-        }
+        resolvePlayerId(targetName, plugin).thenAccept(targetUUID -> {
+            if (targetUUID == null) {
+                source.sendMessage(
+                        plugin.getLanguageManager().render(source, "player-not-found", "{player}", targetName));
+                return;
+            }
 
-        if (!socialPlayer.isBestFriend(targetUUID)) {
-            source.sendMessage(MINI_MESSAGE.deserialize(
-                    plugin.getLanguageManager().getMessage("not-best-friend").replace("{player}", targetName)));
-            return Command.SINGLE_SUCCESS;
-        }
+            if (!socialPlayer.isBestFriend(targetUUID)) {
+                source.sendMessage(
+                        plugin.getLanguageManager().render(source, "not-best-friend", "{player}", targetName));
+                return;
+            }
 
-        socialPlayer.removeBestFriend(targetUUID);
-        plugin.getStorage().savePlayer(socialPlayer);
+            socialPlayer.removeBestFriend(targetUUID);
+            plugin.getStorage().savePlayer(socialPlayer);
 
-        source.sendMessage(MINI_MESSAGE.deserialize(
-                plugin.getLanguageManager().getMessage("best-friend-removed").replace("{player}", targetName)));
+            source.sendMessage(
+                    plugin.getLanguageManager().render(source, "best-friend-removed", "{player}", targetName));
 
-        plugin.getLogger().info("{} removed {} from best friends", player.getUsername(), targetName);
+            plugin.getLogger().info("{} removed {} from best friends", player.getUsername(), targetName);
+        }).exceptionally(error -> reportFailure(source, "remove best friend " + targetName, error, plugin));
         return Command.SINGLE_SUCCESS;
     }
 
@@ -476,59 +515,60 @@ public final class FriendCommand {
         }
 
         if (socialPlayer.getFriends().isEmpty()) {
-            source.sendMessage(MINI_MESSAGE.deserialize(plugin.getLanguageManager().getMessage("friend-list-empty")));
+            source.sendMessage(plugin.getLanguageManager().render(source, "friend-list-empty"));
             return Command.SINGLE_SUCCESS;
         }
 
-        source.sendMessage(MINI_MESSAGE.deserialize(plugin.getLanguageManager().getMessage("friend-list-header")));
+        List<UUID> friends = new ArrayList<>(socialPlayer.getFriends());
+        Set<UUID> onlineFriends = plugin.getPlayerManager().getOnlineFriends(socialPlayer);
 
-        for (UUID friendId : socialPlayer.getFriends()) {
-            Optional<Player> friendOnline = plugin.getServer().getPlayer(friendId);
-            String name = getPlayerName(friendId, plugin);
-            boolean isBest = socialPlayer.isBestFriend(friendId);
+        // Offline names are resolved in one bulk lookup before printing
+        plugin.getPlayerManager().getPlayerNames(friends).thenAccept(names -> {
+            source.sendMessage(plugin.getLanguageManager().render(source, "friend-list-header"));
 
-            String prefix = isBest ? "<gold>★</gold> " : "";
-            String status = friendOnline.isPresent() ? "<green>●</green>" : "<gray>○</gray>";
+            for (UUID friendId : friends) {
+                String name = getPlayerName(friendId, names);
+                boolean isBest = socialPlayer.isBestFriend(friendId);
 
-            source.sendMessage(MINI_MESSAGE.deserialize(prefix + status + " " + name));
-        }
+                Component prefix = isBest ? BEST_FRIEND_PREFIX : Component.empty();
+                Component status = onlineFriends.contains(friendId) ? ONLINE_STATUS : OFFLINE_STATUS;
+
+                source.sendMessage(prefix.append(status).append(Component.text(" " + name)));
+            }
+        }).exceptionally(error -> reportFailure(source, "list friends", error, plugin));
 
         return Command.SINGLE_SUCCESS;
     }
 
     // ==================== UTILITIES ====================
 
-    private static UUID findPlayerUUID(String name, Main plugin) {
-        // Check online players first
-        Optional<Player> online = plugin.getServer().getPlayer(name);
-        if (online.isPresent()) {
-            return online.get().getUniqueId();
-        }
-
-        // Check loaded players cache
-        for (SocialPlayer loaded : plugin.getPlayerManager().getLoadedPlayers().values()) {
-            if (loaded.getPlayerName().equalsIgnoreCase(name)) {
-                return loaded.getPlayerId();
-            }
-        }
+    /**
+     * Finds a player's UUID by name, asking storage when they are not online.
+     *
+     * @return A CompletableFuture that completes with the UUID, or null if the player never joined.
+     */
+    private static CompletableFuture<UUID> resolvePlayerId(String name, Main plugin) {
+        return plugin.getPlayerManager().findPlayerId(name);
+    }
 
+    /**
+     * Exceptional branch of the async command chains: logs the error and tells the player something went wrong.
+     *
+     * @param action What the command was doing, for the log.
+     */
+    private static Void reportFailure(CommandSource source, String action, Throwable error, Main plugin) {
+        String name = source instanceof Player player ? player.getUsername() : "console";
+        plugin.getLogger().error("{} failed to {}", name, action, error);
+        source.sendMessage(MINI_MESSAGE.deserialize("<red>Something went wrong. Please try again later.</red>"));
         return null;
     }
 
-    private static String getPlayerName(UUID uuid, Main plugin) {
-        // Check online players
-        Optional<Player> online = plugin.getServer().getPlayer(uuid);
-        if (online.isPresent()) {
-            return online.get().getUsername();
-        }
-
-        // Check loaded cache
-        SocialPlayer loaded = plugin.getPlayerManager().getPlayer(uuid);
-        if (loaded != null) {
-            return loaded.getPlayerName();
-        }
-
-        return uuid.toString().substring(0, 8);
+    /**
+     * Gets a name from a bulk lookup, falling back to a short UUID for players who never had one stored.
+     */
+    private static String getPlayerName(UUID uuid, Map<UUID, String> names) {
+        String name = names.get(uuid);
+        return name != null ? name : uuid.toString().substring(0, 8);
     }
 
     // ==================== NOTIFICATIONS TOGGLE ====================
@@ -556,7 +596,7 @@ public final class FriendCommand {
         plugin.getStorage().savePlayer(socialPlayer);
 
         String messageKey = enabled ? "notifications-enabled" : "notifications-disabled";
-        player.sendMessage(MINI_MESSAGE.deserialize(plugin.getLanguageManager().getMessage(messageKey)));
+        player.sendMessage(plugin.getLanguageManager().render(player, messageKey));
 
         return Command.SINGLE_SUCCESS;
     }
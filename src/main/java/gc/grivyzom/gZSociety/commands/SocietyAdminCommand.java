@@ -1,16 +1,30 @@
 package gc.grivyzom.gZSociety.commands;
 
 import com.mojang.brigadier.Command;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.builder.RequiredArgumentBuilder;
 import com.mojang.brigadier.tree.LiteralCommandNode;
 import com.velocitypowered.api.command.BrigadierCommand;
 import com.velocitypowered.api.command.CommandSource;
 import gc.grivyzom.gZSociety.Main;
+import gc.grivyzom.gZSociety.manager.AutosaveScheduler;
+import gc.grivyzom.gZSociety.manager.NotificationDispatcher;
+import gc.grivyzom.gZSociety.manager.PlayerManager;
+import gc.grivyzom.gZSociety.manager.ProfileCache;
+import gc.grivyzom.gZSociety.objects.PlayerIdDictionary;
+import gc.grivyzom.gZSociety.storage.FileStorage;
+import gc.grivyzom.gZSociety.storage.SQLStorage;
+import gc.grivyzom.gZSociety.storage.Storage;
+import gc.grivyzom.gZSociety.storage.StorageExecutor;
+import gc.grivyzom.gZSociety.storage.WriteBehindStorage;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 
 public final class SocietyAdminCommand {
 
+    private static final int DEFAULT_MIGRATION_CHUNK = 1000;
+
     public static BrigadierCommand create(Main plugin) {
         LiteralArgumentBuilder<CommandSource> builder = LiteralArgumentBuilder.<CommandSource>literal("gzsociety")
                 .requires(source -> source.hasPermission("gzsociety.admin"))
@@ -21,56 +35,27 @@ public final class SocietyAdminCommand {
                             Component.text("/gzsociety reload - Reloads config and language.", NamedTextColor.GRAY));
                     ctx.getSource().sendMessage(
                             Component.text("/gzsociety status - Shows plugin status.", NamedTextColor.GRAY));
+                    ctx.getSource().sendMessage(Component.text(
+                            "/gzsociety migrate-uuids [chunk-size] - Converts UUID columns to BINARY(16) online.",
+                            NamedTextColor.GRAY));
                     return Command.SINGLE_SUCCESS;
                 })
                 // Subcommand /gzsociety reload
                 .then(LiteralArgumentBuilder.<CommandSource>literal("reload")
                         .requires(source -> source.hasPermission("gzsociety.admin.reload"))
-                        .executes(ctx -> {
-                            try {
-                                // Reload config
-                                plugin.getConfigManager().load();
-
-                                // Reload language with new setting
-                                String newLanguage = plugin.getConfigManager().getLanguage();
-                                plugin.getLanguageManager().load(newLanguage);
-
-                                ctx.getSource().sendMessage(Component.text("✓ ", NamedTextColor.GREEN)
-                                        .append(Component.text("Configuration and language reloaded!",
-                                                NamedTextColor.WHITE)));
-                                ctx.getSource().sendMessage(Component.text("  Language: ", NamedTextColor.GRAY)
-                                        .append(Component.text(newLanguage, NamedTextColor.AQUA)));
-
-                                plugin.getLogger().info("Config and language reloaded by {}",
-                                        ctx.getSource().toString());
-                            } catch (Exception e) {
-                                plugin.getLogger().error("Failed to reload", e);
-                                ctx.getSource().sendMessage(
-                                        Component.text("✗ Failed to reload. Check console.", NamedTextColor.RED));
-                            }
-                            return Command.SINGLE_SUCCESS;
-                        }))
+                        .executes(ctx -> executeReload(ctx.getSource(), plugin)))
                 // Subcommand /gzsociety status
                 .then(LiteralArgumentBuilder.<CommandSource>literal("status")
                         .requires(source -> source.hasPermission("gzsociety.admin.status"))
-                        .executes(ctx -> {
-                            String storageType = plugin.getConfigManager().getStorageType();
-                            String language = plugin.getLanguageManager().getCurrentLanguage();
-                            int cachedPlayers = plugin.getPlayerManager().getLoadedPlayers().size();
-
-                            ctx.getSource()
-                                    .sendMessage(Component.text("--- GZ-Society Status ---", NamedTextColor.AQUA));
-                            ctx.getSource().sendMessage(Component.text("  Version: ", NamedTextColor.GRAY)
-                                    .append(Component.text("1.2.0-SNAPSHOT", NamedTextColor.GREEN)));
-                            ctx.getSource().sendMessage(Component.text("  Language: ", NamedTextColor.GRAY)
-                                    .append(Component.text(language, NamedTextColor.GOLD)));
-                            ctx.getSource().sendMessage(Component.text("  Storage: ", NamedTextColor.GRAY)
-                                    .append(Component.text(storageType, NamedTextColor.GOLD)));
-                            ctx.getSource().sendMessage(Component.text("  Cached Players: ", NamedTextColor.GRAY)
-                                    .append(Component.text(String.valueOf(cachedPlayers), NamedTextColor.GOLD)));
-
-                            return Command.SINGLE_SUCCESS;
-                        }));
+                        .executes(ctx -> executeStatus(ctx.getSource(), plugin)))
+                // Subcommand /gzsociety migrate-uuids [chunk-size]
+                .then(LiteralArgumentBuilder.<CommandSource>literal("migrate-uuids")
+                        .requires(source -> source.hasPermission("gzsociety.admin.migrate"))
+                        .executes(ctx -> executeMigrateUuids(ctx.getSource(), plugin, DEFAULT_MIGRATION_CHUNK))
+                        .then(RequiredArgumentBuilder
+                                .<CommandSource, Integer>argument("chunk-size", IntegerArgumentType.integer(1, 50000))
+                                .executes(ctx -> executeMigrateUuids(ctx.getSource(), plugin,
+                                        IntegerArgumentType.getInteger(ctx, "chunk-size")))));
 
         LiteralCommandNode<CommandSource> node = builder.build();
         BrigadierCommand command = new BrigadierCommand(node);
@@ -86,4 +71,163 @@ public final class SocietyAdminCommand {
 
         return command;
     }
+
+    private static int executeReload(CommandSource source, Main plugin) {
+        // Files are read and parsed on a scheduler thread; the new config and languages
+        // are swapped in whole, so players keep using the old ones until then
+        plugin.getServer().getScheduler().buildTask(plugin, () -> {
+            try {
+                // Reload config
+                plugin.getConfigManager().load();
+
+                // Reload language with new setting
+                String newLanguage = plugin.getConfigManager().getLanguage();
+                plugin.getLanguageManager().load(newLanguage, plugin.getConfigManager().isPerPlayerLanguage());
+
+                source.sendMessage(Component.text("✓ ", NamedTextColor.GREEN)
+                        .append(Component.text("Configuration and language reloaded!", NamedTextColor.WHITE)));
+                source.sendMessage(Component.text("  Language: ", NamedTextColor.GRAY)
+                        .append(Component.text(plugin.getLanguageManager().getCurrentLanguage(),
+                                NamedTextColor.AQUA)));
+                source.sendMessage(Component.text("  Loaded Languages: ", NamedTextColor.GRAY)
+                        .append(Component.text(String.join(", ", plugin.getLanguageManager().getLoadedLanguages()),
+                                NamedTextColor.AQUA)));
+
+                plugin.getLogger().info("Config and language reloaded by {}", source.toString());
+            } catch (Exception e) {
+                plugin.getLogger().error("Failed to reload", e);
+                source.sendMessage(Component.text("✗ Failed to reload. Check console.", NamedTextColor.RED));
+            }
+        }).schedule();
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int executeStatus(CommandSource source, Main plugin) {
+        String storageType = plugin.getConfigManager().getStorageType();
+        String language = plugin.getLanguageManager().getCurrentLanguage();
+        int cachedPlayers = plugin.getPlayerManager().getLoadedPlayers().size();
+
+        source.sendMessage(Component.text("--- GZ-Society Status ---", NamedTextColor.AQUA));
+        source.sendMessage(Component.text("  Version: ", NamedTextColor.GRAY)
+                .append(Component.text("1.2.0-SNAPSHOT", NamedTextColor.GREEN)));
+        source.sendMessage(Component.text("  Language: ", NamedTextColor.GRAY)
+                .append(Component.text(language, NamedTextColor.GOLD)));
+        source.sendMessage(Component.text("  Storage: ", NamedTextColor.GRAY)
+                .append(Component.text(storageType, NamedTextColor.GOLD)));
+        source.sendMessage(Component.text("  Cached Players: ", NamedTextColor.GRAY)
+                .append(Component.text(String.valueOf(cachedPlayers), NamedTextColor.GOLD)));
+        PlayerManager playerManager = plugin.getPlayerManager();
+        source.sendMessage(Component.text("  Time to Ready (avg/max): ", NamedTextColor.GRAY)
+                .append(Component.text(String.format("%.1fms / %.1fms (%d loads)",
+                        playerManager.getAverageReadyMillis(), playerManager.getMaxReadyMillis(),
+                        playerManager.getReadyCount()), NamedTextColor.GOLD)));
+        source.sendMessage(Component.text("  Ready at Login (ready/joins/timeouts): ", NamedTextColor.GRAY)
+                .append(Component.text(playerManager.getReadyAtJoinCount() + "/" + playerManager.getJoinCount()
+                        + "/" + playerManager.getAwaitTimeouts(), NamedTextColor.GOLD)));
+        source.sendMessage(Component.text("  Loads Coalesced / Reconnects from Memory: ", NamedTextColor.GRAY)
+                .append(Component.text(playerManager.getCoalescedLoads() + " / " + playerManager.getRevivedCount(),
+                        NamedTextColor.GOLD)));
+        source.sendMessage(Component.text("  Player Ids: ", NamedTextColor.GRAY)
+                .append(Component.text(String.valueOf(PlayerIdDictionary.global().size()), NamedTextColor.GOLD)));
+
+        ProfileCache profileCache = plugin.getPlayerManager().getProfileCache();
+        source.sendMessage(Component.text("  Profile Cache: ", NamedTextColor.GRAY)
+                .append(Component.text(String.format("%d names, %.0f%% hits (%d/%d), %d evicted",
+                        profileCache.size(), profileCache.getHitRate() * 100, profileCache.getHitCount(),
+                        profileCache.getHitCount() + profileCache.getMissCount(),
+                        profileCache.getEvictionCount()), NamedTextColor.GOLD)));
+
+        NotificationDispatcher notifications = plugin.getNotificationDispatcher();
+        source.sendMessage(Component.text("  Notifications (events/digests/pending): ", NamedTextColor.GRAY)
+                .append(Component.text(notifications.getEventsQueued() + "/" + notifications.getDigestsSent()
+                        + "/" + notifications.getPendingCount(), NamedTextColor.GOLD)));
+
+        AutosaveScheduler autosave = plugin.getAutosaveScheduler();
+        if (autosave != null) {
+            source.sendMessage(Component.text("  Autosave (saved/backlog/carried over): ", NamedTextColor.GRAY)
+                    .append(Component.text(autosave.getPlayersSaved() + "/" + autosave.getBacklog() + "/"
+                            + autosave.getCarriedOver(), NamedTextColor.GOLD)));
+            source.sendMessage(Component.text("  Autosave Lag (avg/max): ", NamedTextColor.GRAY)
+                    .append(Component.text(String.format("%.0fms / %.0fms (%d writes, %d failed)",
+                            autosave.getAverageLagMillis(), autosave.getMaxLagMillis(),
+                            autosave.getSlicesWritten(), autosave.getSlicesFailed()), NamedTextColor.GOLD)));
+        }
+
+        StorageExecutor executor = plugin.getStorageExecutor();
+        source.sendMessage(Component.text("  Storage Executor: ", NamedTextColor.GRAY)
+                .append(Component.text(executor.getDescription(), NamedTextColor.GOLD)));
+        source.sendMessage(Component.text("  Storage Queue (depth/active): ", NamedTextColor.GRAY)
+                .append(Component.text(executor.getQueueDepth() + "/" + executor.getActiveCount(),
+                        NamedTextColor.GOLD)));
+        source.sendMessage(Component.text("  Storage Wait (avg/max): ", NamedTextColor.GRAY)
+                .append(Component.text(String.format("%.1fms / %.1fms (%d tasks)", executor.getAverageWaitMillis(),
+                        executor.getMaxWaitMillis(), executor.getCompletedCount()), NamedTextColor.GOLD)));
+
+        if (getBackend(plugin) instanceof SQLStorage sqlStorage) {
+            source.sendMessage(Component.text("  UUID Columns: ", NamedTextColor.GRAY)
+                    .append(Component.text(sqlStorage.isCompactUuids() ? "BINARY(16)" : "VARCHAR(36)",
+                            NamedTextColor.GOLD)));
+            source.sendMessage(Component.text("  Player Loads (avg/max): ", NamedTextColor.GRAY)
+                    .append(Component.text(String.format("%.1fms / %.1fms (%d loads)",
+                            sqlStorage.getAverageLoadMillis(), sqlStorage.getMaxLoadMillis(),
+                            sqlStorage.getLoadCount()), NamedTextColor.GOLD)));
+        }
+
+        if (getBackend(plugin) instanceof FileStorage fileStorage) {
+            source.sendMessage(Component.text("  Profile Log: ", NamedTextColor.GRAY)
+                    .append(Component.text(String.format("%d profiles, %d KB, %.0f%% live, %d compactions",
+                            fileStorage.getProfileCount(), fileStorage.getLogSize() / 1024,
+                            fileStorage.getLiveRatio() * 100, fileStorage.getCompactionCount()),
+                            NamedTextColor.GOLD)));
+            source.sendMessage(Component.text("  Player Loads (avg/max): ", NamedTextColor.GRAY)
+                    .append(Component.text(String.format("%.2fms / %.2fms (%d loads)",
+                            fileStorage.getAverageLoadMillis(), fileStorage.getMaxLoadMillis(),
+                            fileStorage.getLoadCount()), NamedTextColor.GOLD)));
+        }
+
+        if (plugin.getStorage() instanceof WriteBehindStorage writeBehind) {
+            source.sendMessage(Component.text("  Saves (requested/executed): ", NamedTextColor.GRAY)
+                    .append(Component.text(writeBehind.getSavesRequested() + "/" + writeBehind.getSavesExecuted(),
+                            NamedTextColor.GOLD)));
+            source.sendMessage(Component.text("  Pending Saves: ", NamedTextColor.GRAY)
+                    .append(Component.text(String.valueOf(writeBehind.getPendingCount()), NamedTextColor.GOLD)));
+        }
+
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int executeMigrateUuids(CommandSource source, Main plugin, int chunkSize) {
+        if (!(getBackend(plugin) instanceof SQLStorage sqlStorage)) {
+            source.sendMessage(Component.text("✗ UUID migration is only available with MySQL storage.",
+                    NamedTextColor.RED));
+            return Command.SINGLE_SUCCESS;
+        }
+
+        source.sendMessage(Component.text("Migrating UUID columns to BINARY(16) in chunks of " + chunkSize
+                + ". The server stays online meanwhile.", NamedTextColor.YELLOW));
+        plugin.getLogger().info("UUID migration started by {}", source.toString());
+
+        sqlStorage.migrateToCompactUuids(chunkSize,
+                step -> source.sendMessage(Component.text("  " + step, NamedTextColor.GRAY)))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        source.sendMessage(Component.text("✗ " + cause.getMessage(), NamedTextColor.RED));
+                    } else {
+                        source.sendMessage(Component.text("✓ ", NamedTextColor.GREEN)
+                                .append(Component.text("UUID columns migrated to BINARY(16).", NamedTextColor.WHITE)));
+                    }
+                });
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Gets the storage backend, unwrapping the write-behind layer if present.
+     */
+    private static Storage getBackend(Main plugin) {
+        if (plugin.getStorage() instanceof WriteBehindStorage writeBehind) {
+            return writeBehind.getDelegate();
+        }
+        return plugin.getStorage();
+    }
 }
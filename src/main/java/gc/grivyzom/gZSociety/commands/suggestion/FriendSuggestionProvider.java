@@ -9,7 +9,6 @@ import com.velocitypowered.api.proxy.Player;
 import gc.grivyzom.gZSociety.manager.PlayerManager;
 import gc.grivyzom.gZSociety.objects.SocialPlayer;
 
-import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -41,21 +40,12 @@ public class FriendSuggestionProvider implements SuggestionProvider<CommandSourc
             return builder.buildFuture();
         }
 
-        String remaining = builder.getRemainingLowerCase();
-
-        // Get friend names from cache (we need to store names, for now use UUID string)
-        // In a production setup, you'd maintain a UUID -> Name mapping
-        for (UUID friendId : socialPlayer.getFriends()) {
-            // Try to get the player name from online players first
-            SocialPlayer friendPlayer = playerManager.getPlayer(friendId);
-            if (friendPlayer != null) {
-                String friendName = friendPlayer.getPlayerName();
-                if (friendName.toLowerCase().startsWith(remaining)) {
-                    builder.suggest(friendName);
-                }
+        // Sorted friend names, only rebuilt when the friend list changes
+        return playerManager.getFriendNames(socialPlayer).thenApply(names -> {
+            for (String friendName : names.startingWith(builder.getRemaining())) {
+                builder.suggest(friendName);
             }
-        }
-
-        return builder.buildFuture();
+            return builder.build();
+        });
     }
 }
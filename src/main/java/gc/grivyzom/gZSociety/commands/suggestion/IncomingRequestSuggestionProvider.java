@@ -9,7 +9,6 @@ import com.velocitypowered.api.proxy.Player;
 import gc.grivyzom.gZSociety.manager.PlayerManager;
 import gc.grivyzom.gZSociety.objects.SocialPlayer;
 
-import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -41,20 +40,12 @@ public class IncomingRequestSuggestionProvider implements SuggestionProvider<Com
             return builder.buildFuture();
         }
 
-        String remaining = builder.getRemainingLowerCase();
-
-        // Suggest players who have sent us friend requests
-        for (UUID senderId : socialPlayer.getIncomingRequests()) {
-            // Try to get the player name from loaded players
-            SocialPlayer senderPlayer = playerManager.getPlayer(senderId);
-            if (senderPlayer != null) {
-                String senderName = senderPlayer.getPlayerName();
-                if (senderName.toLowerCase().startsWith(remaining)) {
-                    builder.suggest(senderName);
-                }
+        // Suggest players who have sent us friend requests, only rebuilt when the requests change
+        return playerManager.getIncomingRequestNames(socialPlayer).thenApply(names -> {
+            for (String senderName : names.startingWith(builder.getRemaining())) {
+                builder.suggest(senderName);
             }
-        }
-
-        return builder.buildFuture();
+            return builder.build();
+        });
     }
 }
@@ -6,63 +6,64 @@ import com.mojang.brigadier.suggestion.Suggestions;
 import com.mojang.brigadier.suggestion.SuggestionsBuilder;
 import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.proxy.Player;
-import com.velocitypowered.api.proxy.ProxyServer;
+import gc.grivyzom.gZSociety.manager.PlayerManager;
 
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * Provides online player name suggestions for tab completion.
  * This is a reusable suggestion provider that can be applied to any command
  * that needs player name autocomplete.
+ * Names come from the sorted name index in {@link PlayerManager}, so a keystroke
+ * only visits the players matching the typed prefix.
  */
 public class PlayerSuggestionProvider implements SuggestionProvider<CommandSource> {
 
-    private final ProxyServer server;
+    private final PlayerManager playerManager;
     private final boolean excludeSelf;
+    private final int maxSuggestions;
 
     /**
      * Creates a new PlayerSuggestionProvider.
      *
-     * @param server      The proxy server instance.
-     * @param excludeSelf If true, excludes the command executor from suggestions.
+     * @param playerManager  The player manager holding the online name index.
+     * @param excludeSelf    If true, excludes the command executor from suggestions.
+     * @param maxSuggestions The maximum number of names suggested at once.
      */
-    public PlayerSuggestionProvider(ProxyServer server, boolean excludeSelf) {
-        this.server = server;
+    public PlayerSuggestionProvider(PlayerManager playerManager, boolean excludeSelf, int maxSuggestions) {
+        this.playerManager = playerManager;
         this.excludeSelf = excludeSelf;
+        this.maxSuggestions = maxSuggestions;
     }
 
     /**
      * Creates a provider that includes all online players.
      */
-    public static PlayerSuggestionProvider allPlayers(ProxyServer server) {
-        return new PlayerSuggestionProvider(server, false);
+    public static PlayerSuggestionProvider allPlayers(PlayerManager playerManager, int maxSuggestions) {
+        return new PlayerSuggestionProvider(playerManager, false, maxSuggestions);
     }
 
     /**
      * Creates a provider that excludes the command executor.
      */
-    public static PlayerSuggestionProvider otherPlayers(ProxyServer server) {
-        return new PlayerSuggestionProvider(server, true);
+    public static PlayerSuggestionProvider otherPlayers(PlayerManager playerManager, int maxSuggestions) {
+        return new PlayerSuggestionProvider(playerManager, true, maxSuggestions);
     }
 
     @Override
     public CompletableFuture<Suggestions> getSuggestions(
             CommandContext<CommandSource> context,
             SuggestionsBuilder builder) {
-        String remaining = builder.getRemainingLowerCase();
-
-        for (Player player : server.getAllPlayers()) {
-            // Exclude self if configured
-            if (excludeSelf && context.getSource() instanceof Player source) {
-                if (source.getUniqueId().equals(player.getUniqueId())) {
-                    continue;
-                }
-            }
+        // Exclude self if configured
+        UUID exclude = null;
+        if (excludeSelf && context.getSource() instanceof Player source) {
+            exclude = source.getUniqueId();
+        }
 
-            // Filter by input prefix
-            if (player.getUsername().toLowerCase().startsWith(remaining)) {
-                builder.suggest(player.getUsername());
-            }
+        // Filter by input prefix
+        for (String name : playerManager.getOnlineNamesStartingWith(builder.getRemaining(), exclude, maxSuggestions)) {
+            builder.suggest(name);
         }
 
         return builder.buildFuture();
@@ -13,7 +13,8 @@ public class ConfigManager {
 
     private final Path dataDirectory;
     private final Path configFile;
-    private ConfigurationNode root;
+    // Replaced as a whole on reload, readers see either the old or the new tree
+    private volatile ConfigurationNode root;
 
     public ConfigManager(Path dataDirectory) {
         this.dataDirectory = dataDirectory;
@@ -38,6 +39,7 @@ public class ConfigManager {
                 .path(configFile)
                 .build();
 
+        // Fully loaded before it is published
         this.root = loader.load();
     }
 
@@ -53,10 +55,59 @@ public class ConfigManager {
         return root.node("mysql");
     }
 
+    public ConfigurationNode getFileSettings() {
+        return root.node("file");
+    }
+
+    public ConfigurationNode getStorageExecutorSettings() {
+        return root.node("storage-executor");
+    }
+
+    public ConfigurationNode getWriteBehindSettings() {
+        return root.node("write-behind");
+    }
+
+    public ConfigurationNode getAutosaveSettings() {
+        return root.node("autosave");
+    }
+
+    public ConfigurationNode getShutdownSettings() {
+        return root.node("shutdown");
+    }
+
+    public ConfigurationNode getNotificationSettings() {
+        return root.node("notifications");
+    }
+
+    public ConfigurationNode getProfileCacheSettings() {
+        return root.node("profile-cache");
+    }
+
+    /**
+     * Gets the maximum number of player names suggested while typing a command.
+     */
+    public int getMaxSuggestions() {
+        return Math.max(1, root.node("tab-completion", "max-suggestions").getInt(50));
+    }
+
+    /**
+     * Gets how long a login waits for the player's data before letting them in anyway.
+     */
+    public long getLoginWaitMillis() {
+        return Math.max(0, root.node("login", "wait-ms").getLong(3000));
+    }
+
     public String getLanguage() {
         return root.node("language").getString("es");
     }
 
+    /**
+     * Checks whether players get messages in their client's language instead of the configured one.
+     */
+    public boolean isPerPlayerLanguage() {
+        return root.node("per-player-language").getBoolean(true);
+    }
+
     public Path getDataDirectory() {
         return dataDirectory;
     }
@@ -1,27 +1,44 @@
 package gc.grivyzom.gZSociety.config;
 
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.proxy.Player;
+import net.kyori.adventure.text.Component;
 import org.slf4j.Logger;
 import org.spongepowered.configurate.ConfigurationNode;
 import org.spongepowered.configurate.yaml.YamlConfigurationLoader;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Manages language files and message translations.
- * Loads YAML language files from the lang/ folder.
+ * Loads every YAML language file from the lang/ folder; one of them is the default.
+ * Keys missing from a file the plugin also bundles (e.g. added by an update) use the bundled text.
+ * <p>
+ * A load builds a complete new set of {@link LanguagePack}s and publishes it with a single
+ * volatile write, so readers never lock and never see a half-loaded language.
+ * <p>
+ * Messages sent to a player can use the pack matching their client locale. The match is
+ * cached per player until they disconnect, change their client settings or the languages reload.
+ * The cache belongs to the snapshot it was matched against, so a match that finishes after
+ * a reload lands in the discarded snapshot instead of outliving it.
  */
 public class LanguageManager {
 
     private final Path langDirectory;
     private final Logger logger;
-    private final Map<String, String> messages = new HashMap<>();
-    private final Map<String, String> commandNames = new HashMap<>();
-    private String currentLanguage;
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), null, false, new ConcurrentHashMap<>());
 
     public LanguageManager(Path dataDirectory, Logger logger) {
         this.langDirectory = dataDirectory.resolve("lang");
@@ -29,13 +46,12 @@ public class LanguageManager {
     }
 
     /**
-     * Loads the specified language file.
+     * Loads all language files, using the specified one as the default.
      *
-     * @param language The language code (e.g., "es", "en")
+     * @param language  The language code (e.g., "es", "en")
+     * @param perPlayer If true, players get the language of their client when it is available.
      */
-    public void load(String language) throws IOException {
-        this.currentLanguage = language;
-
+    public void load(String language, boolean perPlayer) throws IOException {
         // Create lang directory if it doesn't exist
         if (Files.notExists(langDirectory)) {
             Files.createDirectories(langDirectory);
@@ -45,55 +61,34 @@ public class LanguageManager {
         copyDefaultLanguageFile("es.yml");
         copyDefaultLanguageFile("en.yml");
 
-        // Load the selected language file
-        Path langFile = langDirectory.resolve(language + ".yml");
-
-        if (Files.notExists(langFile)) {
-            logger.warn("Language file '{}' not found, falling back to 'es'", language);
-            langFile = langDirectory.resolve("es.yml");
-            this.currentLanguage = "es";
+        Map<String, LanguagePack> packs = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(langDirectory, "*.yml")) {
+            for (Path langFile : files) {
+                String code = langFile.getFileName().toString();
+                code = code.substring(0, code.length() - ".yml".length());
+                LanguagePack pack = LanguagePack.load(langFile, code, loadBundled(code));
+                if (pack.getBundledFallbacks() > 0) {
+                    logger.info("{} messages are missing from lang/{}.yml, using the bundled ones. "
+                            + "Delete the file to get an up-to-date copy.", pack.getBundledFallbacks(), code);
+                }
+                packs.put(code, pack);
+            }
         }
 
-        YamlConfigurationLoader loader = YamlConfigurationLoader.builder()
-                .path(langFile)
-                .build();
-
-        ConfigurationNode root = loader.load();
-
-        // Load all messages recursively
-        messages.clear();
-        commandNames.clear();
-        loadMessages(root, "");
-
-        // Load command names specifically
-        ConfigurationNode commandsNode = root.node("commands");
-        if (!commandsNode.virtual()) {
-            for (Map.Entry<Object, ? extends ConfigurationNode> entry : commandsNode.childrenMap().entrySet()) {
-                String cmdKey = entry.getKey().toString();
-                String cmdName = entry.getValue().getString(cmdKey);
-                commandNames.put(cmdKey, cmdName);
+        LanguagePack defaultPack = packs.get(language);
+        if (defaultPack == null) {
+            logger.warn("Language file '{}' not found, falling back to 'es'", language);
+            defaultPack = packs.get("es");
+            if (defaultPack == null) {
+                throw new IOException("Neither '" + language + "' nor 'es' language file could be loaded");
             }
         }
 
-        logger.info("Loaded {} messages and {} command names for language '{}'",
-                messages.size(), commandNames.size(), currentLanguage);
-    }
+        // Starts with no cached matches, they may point at languages that are gone or have a new default
+        this.snapshot = new Snapshot(Map.copyOf(packs), defaultPack, perPlayer, new ConcurrentHashMap<>());
 
-    /**
-     * Recursively loads messages from the configuration node.
-     */
-    private void loadMessages(ConfigurationNode node, String prefix) {
-        if (node.isMap()) {
-            for (Map.Entry<Object, ? extends ConfigurationNode> entry : node.childrenMap().entrySet()) {
-                String key = prefix.isEmpty() ? entry.getKey().toString() : prefix + "." + entry.getKey().toString();
-                loadMessages(entry.getValue(), key);
-            }
-        } else {
-            String value = node.getString("");
-            if (!value.isEmpty()) {
-                messages.put(prefix, value);
-            }
-        }
+        logger.info("Loaded {} messages and {} command names for language '{}' ({} languages available)",
+                defaultPack.size(), defaultPack.getCommandNames().size(), defaultPack.getLanguage(), packs.size());
     }
 
     /**
@@ -113,6 +108,86 @@ public class LanguageManager {
         }
     }
 
+    /**
+     * Loads the language file bundled with the plugin.
+     *
+     * @return The file's root node, or null if the plugin bundles no file for that language.
+     */
+    private ConfigurationNode loadBundled(String code) {
+        URL resource = getClass().getClassLoader().getResource("lang/" + code + ".yml");
+        if (resource == null) {
+            return null;
+        }
+        try {
+            return YamlConfigurationLoader.builder().url(resource).build().load();
+        } catch (IOException e) {
+            logger.error("Failed to read the bundled language file: {}.yml", code, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the default language pack.
+     */
+    public LanguagePack getDefaultPack() {
+        return snapshot.defaultPack();
+    }
+
+    /**
+     * Gets a loaded language pack.
+     *
+     * @param language The language code (e.g., "es", "en")
+     * @return The pack, or the default one if that language is not loaded
+     */
+    public LanguagePack getPack(String language) {
+        Snapshot current = snapshot;
+        return current.packs().getOrDefault(language, current.defaultPack());
+    }
+
+    /**
+     * Gets the language pack for whoever receives a message.
+     * Players get the pack matching their client locale, anyone else the default one.
+     */
+    public LanguagePack getPack(CommandSource recipient) {
+        Snapshot current = snapshot;
+        if (!current.perPlayer() || !(recipient instanceof Player player)) {
+            return current.defaultPack();
+        }
+        String language = current.playerLanguages().computeIfAbsent(player.getUniqueId(),
+                id -> matchLanguage(current, player.getEffectiveLocale()));
+        return current.packs().getOrDefault(language, current.defaultPack());
+    }
+
+    /**
+     * Finds the loaded pack for a locale, trying the full locale (e.g. "es_mx") before the language ("es").
+     */
+    private static String matchLanguage(Snapshot current, Locale locale) {
+        if (locale != null) {
+            String full = locale.toString().toLowerCase(Locale.ROOT);
+            if (current.packs().containsKey(full)) {
+                return full;
+            }
+            if (current.packs().containsKey(locale.getLanguage())) {
+                return locale.getLanguage();
+            }
+        }
+        return current.defaultPack().getLanguage();
+    }
+
+    /**
+     * Drops a player's cached language, e.g. when they leave or change their client language.
+     */
+    public void forgetPlayer(UUID playerId) {
+        snapshot.playerLanguages().remove(playerId);
+    }
+
+    /**
+     * Gets the codes of all loaded languages.
+     */
+    public Set<String> getLoadedLanguages() {
+        return snapshot.packs().keySet();
+    }
+
     /**
      * Gets a message by key.
      *
@@ -120,9 +195,7 @@ public class LanguageManager {
      * @return The translated message, or the key itself if not found
      */
     public String getMessage(String key) {
-        String message = messages.getOrDefault(key, "<red>Missing: " + key + "</red>");
-        // Auto-replace {cmd} with the localized friend command name
-        return message.replace("{cmd}", getCommandName("friend"));
+        return getDefaultPack().getMessage(key);
     }
 
     /**
@@ -140,6 +213,39 @@ public class LanguageManager {
         return message;
     }
 
+    /**
+     * Gets the pre-parsed template of a message.
+     *
+     * @param key The message key
+     * @return The template, or one showing the missing key if not found
+     */
+    public MessageTemplate getTemplate(String key) {
+        return getDefaultPack().getTemplate(key);
+    }
+
+    /**
+     * Renders a message into a component and replaces placeholders, without parsing MiniMessage again.
+     *
+     * @param key          The message key
+     * @param placeholders Pairs of placeholder-value (e.g., "{player}", "Steve")
+     * @return The rendered message
+     */
+    public Component render(String key, String... placeholders) {
+        return getTemplate(key).render(placeholders);
+    }
+
+    /**
+     * Renders a message in the recipient's language and replaces placeholders.
+     *
+     * @param recipient    Who the message is sent to
+     * @param key          The message key
+     * @param placeholders Pairs of placeholder-value (e.g., "{player}", "Steve")
+     * @return The rendered message
+     */
+    public Component render(CommandSource recipient, String key, String... placeholders) {
+        return getPack(recipient).getTemplate(key).render(placeholders);
+    }
+
     /**
      * Gets a localized command name.
      *
@@ -147,27 +253,36 @@ public class LanguageManager {
      * @return The localized command name (e.g., "amigo" in Spanish)
      */
     public String getCommandName(String commandKey) {
-        return commandNames.getOrDefault(commandKey, commandKey);
+        return getDefaultPack().getCommandName(commandKey);
     }
 
     /**
      * Gets all command names map.
      */
     public Map<String, String> getCommandNames() {
-        return new HashMap<>(commandNames);
+        return new HashMap<>(getDefaultPack().getCommandNames());
     }
 
     /**
      * Gets the current language code.
      */
     public String getCurrentLanguage() {
-        return currentLanguage;
+        return getDefaultPack().getLanguage();
     }
 
     /**
      * Reloads the current language.
      */
     public void reload() throws IOException {
-        load(currentLanguage);
+        load(getCurrentLanguage(), snapshot.perPlayer());
+    }
+
+    /**
+     * Everything a load produced, published as one unit. Only the match cache changes afterwards.
+     *
+     * @param playerLanguages Player -> code of the pack matching their client locale
+     */
+    private record Snapshot(Map<String, LanguagePack> packs, LanguagePack defaultPack, boolean perPlayer,
+            ConcurrentMap<UUID, String> playerLanguages) {
     }
 }
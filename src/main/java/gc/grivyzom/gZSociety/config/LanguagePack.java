@@ -0,0 +1,147 @@
+package gc.grivyzom.gZSociety.config;
+
+import org.spongepowered.configurate.ConfigurationNode;
+import org.spongepowered.configurate.yaml.YamlConfigurationLoader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The messages of one language file, fully loaded and parsed.
+ * Immutable once built, so any number of threads can read it without locking.
+ */
+public final class LanguagePack {
+
+    private final String language;
+    private final Map<String, String> messages;
+    private final Map<String, String> commandNames;
+    private final Map<String, MessageTemplate> templates;
+    private final int bundledFallbacks;
+
+    private LanguagePack(String language, Map<String, String> messages, Map<String, String> commandNames,
+            int bundledFallbacks) {
+        this.language = language;
+        this.messages = Map.copyOf(messages);
+        this.commandNames = Map.copyOf(commandNames);
+        this.bundledFallbacks = bundledFallbacks;
+
+        // Parse every message once, rendering only substitutes placeholders
+        Map<String, MessageTemplate> parsed = new HashMap<>(messages.size() * 2);
+        for (String key : messages.keySet()) {
+            parsed.put(key, MessageTemplate.parse(getMessage(key)));
+        }
+        this.templates = Map.copyOf(parsed);
+    }
+
+    /**
+     * Loads a language file.
+     *
+     * @param langFile The YAML file to read.
+     * @param language The language code (e.g., "es", "en")
+     * @param bundled  The same language as bundled with the plugin, or null. Its entries fill in
+     *                 keys missing from the file, e.g. ones added after the file was copied.
+     */
+    public static LanguagePack load(Path langFile, String language, ConfigurationNode bundled) throws IOException {
+        YamlConfigurationLoader loader = YamlConfigurationLoader.builder()
+                .path(langFile)
+                .build();
+
+        ConfigurationNode root = loader.load();
+
+        // Load all messages recursively, the file's own entries over the bundled ones
+        Map<String, String> messages = new HashMap<>();
+        Map<String, String> commandNames = new HashMap<>();
+        if (bundled != null) {
+            loadMessages(bundled, "", messages);
+            loadCommandNames(bundled, commandNames);
+        }
+        Map<String, String> own = new HashMap<>();
+        loadMessages(root, "", own);
+        int bundledFallbacks = 0;
+        for (String key : messages.keySet()) {
+            if (!own.containsKey(key)) {
+                bundledFallbacks++;
+            }
+        }
+        messages.putAll(own);
+        loadCommandNames(root, commandNames);
+
+        return new LanguagePack(language, messages, commandNames, bundledFallbacks);
+    }
+
+    /**
+     * Loads the localized command names.
+     */
+    private static void loadCommandNames(ConfigurationNode root, Map<String, String> commandNames) {
+        ConfigurationNode commandsNode = root.node("commands");
+        if (!commandsNode.virtual()) {
+            for (Map.Entry<Object, ? extends ConfigurationNode> entry : commandsNode.childrenMap().entrySet()) {
+                String cmdKey = entry.getKey().toString();
+                String cmdName = entry.getValue().getString(cmdKey);
+                commandNames.put(cmdKey, cmdName);
+            }
+        }
+    }
+
+    /**
+     * Recursively loads messages from the configuration node.
+     */
+    private static void loadMessages(ConfigurationNode node, String prefix, Map<String, String> messages) {
+        if (node.isMap()) {
+            for (Map.Entry<Object, ? extends ConfigurationNode> entry : node.childrenMap().entrySet()) {
+                String key = prefix.isEmpty() ? entry.getKey().toString() : prefix + "." + entry.getKey().toString();
+                loadMessages(entry.getValue(), key, messages);
+            }
+        } else {
+            String value = node.getString("");
+            if (!value.isEmpty()) {
+                messages.put(prefix, value);
+            }
+        }
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * Gets a message by key, with {cmd} replaced by the localized friend command name.
+     *
+     * @return The translated message, or a placeholder showing the key if not found
+     */
+    public String getMessage(String key) {
+        String message = messages.getOrDefault(key, "<red>Missing: " + key + "</red>");
+        return message.replace("{cmd}", getCommandName("friend"));
+    }
+
+    /**
+     * Gets the pre-parsed template of a message.
+     *
+     * @return The template, or one showing the missing key if not found
+     */
+    public MessageTemplate getTemplate(String key) {
+        MessageTemplate template = templates.get(key);
+        return template != null ? template : MessageTemplate.parse(getMessage(key));
+    }
+
+    public String getCommandName(String commandKey) {
+        return commandNames.getOrDefault(commandKey, commandKey);
+    }
+
+    public Map<String, String> getCommandNames() {
+        return commandNames;
+    }
+
+    public int size() {
+        return messages.size();
+    }
+
+    /**
+     * Gets how many messages were missing from the file and taken from the bundled one.
+     */
+    public int getBundledFallbacks() {
+        return bundledFallbacks;
+    }
+}
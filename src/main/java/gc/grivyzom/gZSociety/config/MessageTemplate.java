@@ -0,0 +1,134 @@
+package gc.grivyzom.gZSociety.config;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A language message parsed once into a component, when the language loads.
+ * Each {placeholder} is parsed into a marker component of its own; rendering swaps the markers
+ * for the values, copying only the parts of the tree above them. Nothing is parsed per render,
+ * and a message without placeholders returns the same component every time.
+ * Placeholder values are inserted as plain text, so a name can never inject tags.
+ */
+public final class MessageTemplate {
+
+    private static final MiniMessage MINI_MESSAGE = MiniMessage.miniMessage();
+    // Keeps every marker a component of its own, the default parser would merge it into the text around it
+    private static final MiniMessage TEMPLATE_PARSER = MiniMessage.builder()
+            .postProcessor(component -> component)
+            .build();
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([a-z-]+)}");
+    // Marker content of the first placeholder; the others follow. Private use characters, never in a message
+    private static final char FIRST_MARKER = '\uE000';
+
+    private final Component component;
+    private final String[] names; // Placeholder names, e.g. "player"
+    private final String[] keys; // The same as written in the message, e.g. "{player}"
+
+    private MessageTemplate(Component component, String[] names) {
+        this.component = component;
+        this.names = names;
+        this.keys = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            keys[i] = "{" + names[i] + "}";
+        }
+    }
+
+    /**
+     * Prepares a MiniMessage string for rendering.
+     */
+    public static MessageTemplate parse(String message) {
+        Set<String> names = new LinkedHashSet<>();
+        StringBuilder source = new StringBuilder(message.length());
+        Matcher matcher = PLACEHOLDER.matcher(message);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+            matcher.appendReplacement(source, "<$1>");
+        }
+        matcher.appendTail(source);
+
+        if (names.isEmpty()) {
+            return new MessageTemplate(MINI_MESSAGE.deserialize(message), new String[0]);
+        }
+        TagResolver.Builder markers = TagResolver.builder();
+        int index = 0;
+        for (String name : names) {
+            markers.tag(name, Tag.selfClosingInserting(Component.text((char) (FIRST_MARKER + index++))));
+        }
+        return new MessageTemplate(TEMPLATE_PARSER.deserialize(source.toString(), markers.build()),
+                names.toArray(new String[0]));
+    }
+
+    /**
+     * Renders the template, replacing placeholders.
+     *
+     * @param placeholders Pairs of placeholder-value (e.g., "{player}", "Steve")
+     * @return The component. A template without placeholders returns the same immutable component every time.
+     */
+    public Component render(String... placeholders) {
+        if (names.length == 0) {
+            return component;
+        }
+        String[] values = new String[names.length];
+        for (int n = 0; n < names.length; n++) {
+            // A placeholder without a value stays as written
+            values[n] = keys[n];
+            for (int i = 0; i < placeholders.length - 1; i += 2) {
+                if (keys[n].equals(placeholders[i])) {
+                    values[n] = placeholders[i + 1];
+                    break;
+                }
+            }
+        }
+        return substitute(component, values);
+    }
+
+    /**
+     * Swaps the markers in a parsed component for placeholder values.
+     *
+     * @return The component itself if it holds no marker, otherwise a copy.
+     */
+    private Component substitute(Component node, String[] values) {
+        if (node instanceof TextComponent text && text.content().length() == 1) {
+            int index = text.content().charAt(0) - FIRST_MARKER;
+            if (index >= 0 && index < values.length) {
+                return text.content(values[index]);
+            }
+        }
+
+        Component result = node;
+        // <hover:show_text:...> text is parsed with the same markers
+        HoverEvent<?> hover = node.hoverEvent();
+        if (hover != null && hover.value() instanceof Component hoverText) {
+            Component substituted = substitute(hoverText, values);
+            if (substituted != hoverText) {
+                result = result.hoverEvent(HoverEvent.showText(substituted));
+            }
+        }
+
+        List<Component> children = node.children();
+        List<Component> substitutedChildren = null;
+        for (int i = 0; i < children.size(); i++) {
+            Component child = children.get(i);
+            Component substituted = substitute(child, values);
+            if (substituted != child && substitutedChildren == null) {
+                substitutedChildren = new ArrayList<>(children.subList(0, i));
+            }
+            if (substitutedChildren != null) {
+                substitutedChildren.add(substituted);
+            }
+        }
+        return substitutedChildren == null ? result : result.children(substitutedChildren);
+    }
+}
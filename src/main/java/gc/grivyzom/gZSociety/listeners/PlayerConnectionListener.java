@@ -1,8 +1,14 @@
 package gc.grivyzom.gZSociety.listeners;
 
+import com.velocitypowered.api.event.EventTask;
+import com.velocitypowered.api.event.PostOrder;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.LoginEvent;
+import com.velocitypowered.api.event.player.GameProfileRequestEvent;
+import com.velocitypowered.api.event.player.PlayerSettingsChangedEvent;
+import com.velocitypowered.api.util.GameProfile;
+import gc.grivyzom.gZSociety.config.LanguageManager;
 import gc.grivyzom.gZSociety.manager.PlayerManager;
 
 /**
@@ -11,18 +17,51 @@ import gc.grivyzom.gZSociety.manager.PlayerManager;
 public class PlayerConnectionListener {
 
     private final PlayerManager playerManager;
+    private final LanguageManager languageManager;
+    private final long loginWaitMillis;
 
-    public PlayerConnectionListener(PlayerManager playerManager) {
+    public PlayerConnectionListener(PlayerManager playerManager, LanguageManager languageManager,
+            long loginWaitMillis) {
         this.playerManager = playerManager;
+        this.languageManager = languageManager;
+        this.loginWaitMillis = loginWaitMillis;
     }
 
-    @Subscribe
-    public void onPlayerLogin(LoginEvent event) {
+    /**
+     * The earliest point where the final UUID is known; the load runs while the login finishes.
+     * Last, so a plugin that rewrites the profile has already done so.
+     */
+    @Subscribe(order = PostOrder.LAST)
+    public void onGameProfileRequest(GameProfileRequestEvent event) {
+        GameProfile profile = event.getGameProfile();
+        playerManager.prefetch(profile.getId(), profile.getName());
+    }
+
+    /**
+     * Holds the login until the player's data is ready, up to the configured wait,
+     * so commands and notifications find it loaded once they reach a server.
+     * Last, so the player is only indexed once no other plugin can deny the login.
+     */
+    @Subscribe(order = PostOrder.LAST)
+    public EventTask onPlayerLogin(LoginEvent event) {
+        if (!event.getResult().isAllowed()) {
+            playerManager.abandonPrefetch(event.getPlayer().getUniqueId());
+            return null;
+        }
         playerManager.handlePlayerJoin(event.getPlayer());
+        return EventTask.resumeWhenComplete(
+                playerManager.awaitPlayer(event.getPlayer().getUniqueId(), loginWaitMillis));
     }
 
     @Subscribe
     public void onPlayerDisconnect(DisconnectEvent event) {
         playerManager.handlePlayerLeave(event.getPlayer());
+        languageManager.forgetPlayer(event.getPlayer().getUniqueId());
+    }
+
+    @Subscribe
+    public void onSettingsChanged(PlayerSettingsChangedEvent event) {
+        // The client language may have changed, it is matched again on the next message
+        languageManager.forgetPlayer(event.getPlayer().getUniqueId());
     }
 }
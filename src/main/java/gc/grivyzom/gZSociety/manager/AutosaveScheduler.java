@@ -0,0 +1,198 @@
+package gc.grivyzom.gZSociety.manager;
+
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import gc.grivyzom.gZSociety.Main;
+import gc.grivyzom.gZSociety.objects.SocialPlayer;
+import gc.grivyzom.gZSociety.storage.PartialSaveException;
+import gc.grivyzom.gZSociety.storage.Storage;
+import org.spongepowered.configurate.ConfigurationNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Periodically saves online players with unsaved changes, so a crash loses at most one interval of them.
+ * <p>
+ * Every interval the dirty players are queued, and the queue is written in small slices spread
+ * over the interval on Velocity's scheduler, so storage sees a steady trickle of writes instead
+ * of a spike. Players that could not be written within the interval stay queued for the next one.
+ */
+public class AutosaveScheduler {
+
+    private static final long TICK_MILLIS = 1000;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+
+    private final Main plugin;
+    private final PlayerManager playerManager;
+    private final Storage storage;
+    private final long intervalNanos;
+    private final int sliceSize;
+
+    // Players waiting to be saved -> when they were queued, in queue order. Guarded by this.
+    private final Map<UUID, Long> queue = new LinkedHashMap<>();
+    private long cycleStartNanos = System.nanoTime(); // Guarded by this
+    private volatile int carriedOver;
+    private ScheduledTask task;
+
+    // Metrics
+    private final LongAdder playersSaved = new LongAdder();
+    private final LongAdder slicesWritten = new LongAdder();
+    private final LongAdder slicesFailed = new LongAdder();
+    private final LongAdder lagCount = new LongAdder();
+    private final LongAdder lagNanos = new LongAdder();
+    private final AtomicLong lagMaxNanos = new AtomicLong();
+
+    public AutosaveScheduler(Main plugin, PlayerManager playerManager, Storage storage, ConfigurationNode settings) {
+        this.plugin = plugin;
+        this.playerManager = playerManager;
+        this.storage = storage;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(Math.max(10, settings.node("interval-seconds").getLong(300)));
+        this.sliceSize = Math.max(1, settings.node("slice-size").getInt(20));
+    }
+
+    public void start() {
+        task = plugin.getServer().getScheduler().buildTask(plugin, this::tick)
+                .delay(TICK_MILLIS, TimeUnit.MILLISECONDS)
+                .repeat(TICK_MILLIS, TimeUnit.MILLISECONDS)
+                .schedule();
+    }
+
+    /**
+     * Stops the ticks. Whatever is still queued is left to the shutdown save.
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    private synchronized void tick() {
+        try {
+            long now = System.nanoTime();
+            if (now - cycleStartNanos >= intervalNanos) {
+                startCycle(now);
+            }
+            if (queue.isEmpty()) {
+                return;
+            }
+
+            // Spread what is left over the ticks left in this interval
+            long ticksLeft = Math.max(1, (cycleStartNanos + intervalNanos - now) / TICK_NANOS);
+            int count = (int) Math.min(sliceSize, (queue.size() + ticksLeft - 1) / ticksLeft);
+
+            List<SocialPlayer> slice = new ArrayList<>(count);
+            Iterator<Map.Entry<UUID, Long>> iterator = queue.entrySet().iterator();
+            while (iterator.hasNext() && slice.size() < count) {
+                Map.Entry<UUID, Long> entry = iterator.next();
+                iterator.remove();
+                SocialPlayer player = playerManager.getPlayer(entry.getKey());
+                // Skip players who left (their final save covers them) or were saved meanwhile.
+                // Cleared before the write, so a change made while it runs flags them again.
+                if (player == null || !player.markClean()) {
+                    continue;
+                }
+                slice.add(player);
+                recordLag(now - entry.getValue());
+            }
+            if (!slice.isEmpty()) {
+                write(slice);
+            }
+        } catch (Exception e) {
+            plugin.getLogger().error("Autosave tick failed", e);
+        }
+    }
+
+    /**
+     * Queues every dirty player not queued yet. Players still queued from the last interval keep their place.
+     */
+    private void startCycle(long now) {
+        carriedOver = queue.size();
+        for (SocialPlayer player : playerManager.getLoadedPlayers().values()) {
+            if (player.isDirty()) {
+                queue.putIfAbsent(player.getPlayerId(), now);
+            }
+        }
+        cycleStartNanos = now;
+    }
+
+    private void write(List<SocialPlayer> slice) {
+        slicesWritten.increment();
+        storage.savePlayers(slice).whenComplete((ignored, error) -> {
+            if (error == null) {
+                playersSaved.add(slice.size());
+                return;
+            }
+            // Only the players that were not written are picked up again on the next interval
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            Set<UUID> failedIds = cause instanceof PartialSaveException partial ? partial.getFailedPlayerIds() : null;
+            int failedCount = 0;
+            for (SocialPlayer player : slice) {
+                if (failedIds == null || failedIds.contains(player.getPlayerId())) {
+                    player.markDirty();
+                    failedCount++;
+                }
+            }
+            playersSaved.add(slice.size() - failedCount);
+            slicesFailed.increment();
+            plugin.getLogger().warn("Autosave of {} players failed, retrying next interval", failedCount, error);
+        });
+    }
+
+    private void recordLag(long elapsedNanos) {
+        lagCount.increment();
+        lagNanos.add(elapsedNanos);
+        lagMaxNanos.accumulateAndGet(elapsedNanos, Math::max);
+    }
+
+    // --- Metrics ---
+
+    /**
+     * Players queued and not written yet.
+     */
+    public synchronized int getBacklog() {
+        return queue.size();
+    }
+
+    /**
+     * Players that were still queued when the last interval ended.
+     */
+    public int getCarriedOver() {
+        return carriedOver;
+    }
+
+    public long getPlayersSaved() {
+        return playersSaved.sum();
+    }
+
+    public long getSlicesWritten() {
+        return slicesWritten.sum();
+    }
+
+    public long getSlicesFailed() {
+        return slicesFailed.sum();
+    }
+
+    /**
+     * Average time players waited in the queue before their write started, in milliseconds.
+     */
+    public double getAverageLagMillis() {
+        long count = lagCount.sum();
+        return count == 0 ? 0 : lagNanos.sum() / (double) count / 1_000_000.0;
+    }
+
+    /**
+     * Longest time a player waited in the queue before their write started, in milliseconds.
+     */
+    public double getMaxLagMillis() {
+        return lagMaxNanos.get() / 1_000_000.0;
+    }
+}
@@ -0,0 +1,79 @@
+package gc.grivyzom.gZSociety.manager;
+
+import gc.grivyzom.gZSociety.objects.SocialPlayer;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The reverse of the loaded players' friend lists: for a player, which loaded players have them as a friend.
+ * Lets join and leave notifications visit only the relevant players instead of everyone online.
+ * <p>
+ * Kept up to date by the friend list mutations of the players it watches. It may briefly
+ * hold a friendship that was just removed, so callers check the friend list before acting.
+ */
+final class FriendIndex implements SocialPlayer.FriendListObserver {
+
+    private final ConcurrentMap<UUID, Set<UUID>> friendedBy = new ConcurrentHashMap<>();
+
+    /**
+     * Starts tracking a loaded player's friend list.
+     */
+    void watch(SocialPlayer player) {
+        // Observe first, so no change made while indexing is missed
+        player.setFriendListObserver(this);
+        for (UUID friendId : player.getFriends()) {
+            add(friendId, player.getPlayerId());
+        }
+    }
+
+    /**
+     * Stops tracking a player who is no longer loaded.
+     */
+    void unwatch(SocialPlayer player) {
+        player.setFriendListObserver(null);
+        for (UUID friendId : player.getFriends()) {
+            remove(friendId, player.getPlayerId());
+        }
+    }
+
+    /**
+     * Gets the loaded players who have a player as a friend.
+     *
+     * @return A snapshot, empty if nobody loaded has them as a friend.
+     */
+    Set<UUID> getPlayersWithFriend(UUID friendId) {
+        Set<UUID> owners = friendedBy.get(friendId);
+        return owners == null ? Collections.emptySet() : new HashSet<>(owners);
+    }
+
+    @Override
+    public void onFriendAdded(SocialPlayer owner, UUID friendId) {
+        add(friendId, owner.getPlayerId());
+    }
+
+    @Override
+    public void onFriendRemoved(SocialPlayer owner, UUID friendId) {
+        remove(friendId, owner.getPlayerId());
+    }
+
+    private void add(UUID friendId, UUID ownerId) {
+        // Inside compute, so a concurrent removal cannot drop the set this is added to
+        friendedBy.compute(friendId, (id, owners) -> {
+            Set<UUID> set = owners != null ? owners : ConcurrentHashMap.newKeySet();
+            set.add(ownerId);
+            return set;
+        });
+    }
+
+    private void remove(UUID friendId, UUID ownerId) {
+        friendedBy.computeIfPresent(friendId, (id, owners) -> {
+            owners.remove(ownerId);
+            return owners.isEmpty() ? null : owners;
+        });
+    }
+}
@@ -0,0 +1,197 @@
+package gc.grivyzom.gZSociety.manager;
+
+import com.velocitypowered.api.proxy.Player;
+import gc.grivyzom.gZSociety.Main;
+import gc.grivyzom.gZSociety.config.LanguagePack;
+import net.kyori.adventure.title.Title;
+import org.spongepowered.configurate.ConfigurationNode;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Queues friend join and leave notifications and sends them as one digest per recipient.
+ * During a login storm a player gets "Alice, Bob and 12 others joined" instead of
+ * fourteen messages and titles. A player with a single event still gets the usual message.
+ * <p>
+ * Digests are flushed on a dedicated thread every window, and a recipient gets at most
+ * one digest per configured interval; events arriving meanwhile wait for the next one.
+ */
+public class NotificationDispatcher {
+
+    private final Main plugin;
+    private final long recipientIntervalNanos;
+    private final int maxNames;
+
+    private final ConcurrentMap<UUID, Digest> pending = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, Long> lastSent = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    // Metrics
+    private final LongAdder eventsQueued = new LongAdder();
+    private final LongAdder digestsSent = new LongAdder();
+
+    public NotificationDispatcher(Main plugin, ConfigurationNode settings) {
+        this.plugin = plugin;
+        long windowMillis = Math.max(50, settings.node("window-ms").getLong(1000));
+        this.recipientIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(0, settings.node("recipient-interval-ms").getLong(3000)));
+        this.maxNames = Math.max(1, settings.node("max-names").getInt(3));
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GZ-Society Notifications");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushPending, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a notification that a friend of the recipient joined.
+     */
+    public void queueJoin(UUID recipientId, String friendName, boolean bestFriend) {
+        eventsQueued.increment();
+        pending.compute(recipientId, (id, digest) -> {
+            Digest updated = digest != null ? digest : new Digest();
+            // A friend who left and came back within the window cancels out
+            if (!updated.left.remove(friendName)) {
+                updated.joined.add(friendName);
+                if (bestFriend) {
+                    updated.bestFriendsJoined.add(friendName);
+                }
+            }
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+
+    /**
+     * Queues a notification that a friend of the recipient left.
+     */
+    public void queueLeave(UUID recipientId, String friendName) {
+        eventsQueued.increment();
+        pending.compute(recipientId, (id, digest) -> {
+            Digest updated = digest != null ? digest : new Digest();
+            if (updated.joined.remove(friendName)) {
+                updated.bestFriendsJoined.remove(friendName);
+            } else {
+                updated.left.add(friendName);
+            }
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+
+    /**
+     * Stops the flusher. Queued notifications are dropped, nobody is left to read them.
+     */
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    private void flushPending() {
+        try {
+            long now = System.nanoTime();
+            for (UUID recipientId : pending.keySet()) {
+                Long previous = lastSent.get(recipientId);
+                if (previous != null && now - previous < recipientIntervalNanos) {
+                    continue; // Rate limited, keeps collecting until the next window
+                }
+
+                Digest digest = pending.remove(recipientId);
+                Optional<Player> recipient = plugin.getServer().getPlayer(recipientId);
+                if (digest == null || recipient.isEmpty()) {
+                    lastSent.remove(recipientId);
+                    continue;
+                }
+                send(recipient.get(), digest);
+                lastSent.put(recipientId, now);
+                digestsSent.increment();
+            }
+            // Forget recipients whose interval is over, so the map only holds recent ones
+            lastSent.values().removeIf(sent -> now - sent >= recipientIntervalNanos);
+        } catch (Exception e) {
+            plugin.getLogger().error("Failed to send friend notifications", e);
+        }
+    }
+
+    private void send(Player player, Digest digest) {
+        // Looked up once per recipient, every message below comes from the same pre-parsed pack
+        LanguagePack pack = plugin.getLanguageManager().getPack(player);
+
+        if (!digest.bestFriendsJoined.isEmpty()) {
+            // One title per digest, for the first best friend who joined
+            String friendName = digest.bestFriendsJoined.iterator().next();
+            Title title = Title.title(
+                    pack.getTemplate("bestfriend-joined-title").render("{player}", friendName),
+                    pack.getTemplate("bestfriend-joined-subtitle").render("{player}", friendName),
+                    Title.Times.times(Duration.ofMillis(500), Duration.ofSeconds(2), Duration.ofMillis(500)));
+            player.showTitle(title);
+        }
+
+        if (digest.joined.size() == 1) {
+            player.sendMessage(pack.getTemplate("friend-joined").render("{player}", digest.joined.iterator().next()));
+        } else if (!digest.joined.isEmpty()) {
+            player.sendMessage(pack.getTemplate("friends-joined-digest")
+                    .render("{players}", formatNames(pack, digest.joined)));
+        }
+
+        if (digest.left.size() == 1) {
+            player.sendMessage(pack.getTemplate("friend-left").render("{player}", digest.left.iterator().next()));
+        } else if (!digest.left.isEmpty()) {
+            player.sendMessage(pack.getTemplate("friends-left-digest")
+                    .render("{players}", formatNames(pack, digest.left)));
+        }
+    }
+
+    /**
+     * Formats names as "Alice, Bob and Carol", or "Alice, Bob and 12 others" past the configured count.
+     */
+    private String formatNames(LanguagePack pack, Set<String> names) {
+        List<String> shown = new ArrayList<>(names);
+        String last;
+        if (shown.size() > maxNames) {
+            last = pack.getMessage("digest-others").replace("{count}", String.valueOf(shown.size() - maxNames));
+            shown = shown.subList(0, maxNames);
+        } else {
+            last = shown.remove(shown.size() - 1);
+        }
+        return String.join(", ", shown) + pack.getMessage("digest-and") + last;
+    }
+
+    // --- Metrics ---
+
+    public long getEventsQueued() {
+        return eventsQueued.sum();
+    }
+
+    public long getDigestsSent() {
+        return digestsSent.sum();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * The notifications waiting for one recipient, in arrival order. Guarded by the pending map.
+     */
+    private static final class Digest {
+        private final Set<String> joined = new LinkedHashSet<>();
+        private final Set<String> left = new LinkedHashSet<>();
+        private final Set<String> bestFriendsJoined = new LinkedHashSet<>();
+
+        private boolean isEmpty() {
+            return joined.isEmpty() && left.isEmpty();
+        }
+    }
+}
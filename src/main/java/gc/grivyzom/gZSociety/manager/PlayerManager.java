@@ -2,47 +2,681 @@ package gc.grivyzom.gZSociety.manager;
 
 import com.velocitypowered.api.proxy.Player;
 import gc.grivyzom.gZSociety.objects.SocialPlayer;
+import gc.grivyzom.gZSociety.objects.SortedNameView;
+import gc.grivyzom.gZSociety.objects.UuidSet;
 import gc.grivyzom.gZSociety.storage.Storage;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Manages the loading, caching, and unloading of SocialPlayer objects.
+ * <p>
+ * A player's load starts at the profile stage of their login ({@link #prefetch}), and the
+ * login can wait for it ({@link #awaitPlayer}), so their data is ready when they reach a server.
+ * <p>
+ * Each player in memory goes through loading, ready and evicting (left, final save running).
+ * Loads of the same player are shared, and a player who reconnects before their final save
+ * finished gets the same profile back instead of rows that save may not have written yet.
  */
 public class PlayerManager {
 
+    // Longer than any login takes; a prefetch older than this belongs to a login that never completed
+    private static final long ABANDONED_PREFETCH_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final CompletableFuture<Void> SAVED = CompletableFuture.completedFuture(null);
+
     private final Storage storage;
+    private final ProfileCache profileCache;
     private final ConcurrentMap<UUID, SocialPlayer> loadedPlayers = new ConcurrentHashMap<>();
+    private final FriendIndex friendIndex = new FriendIndex();
+    // Case-folded name -> UUID of online players, sorted for prefix queries,
+    // and the reverse (with the original case) to drop stale names
+    private final ConcurrentNavigableMap<String, UUID> playersByName = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<UUID, String> namesById = new ConcurrentHashMap<>();
+    // Online players as a bitmap, to intersect with friend lists
+    private final UuidSet onlinePlayers = new UuidSet();
+    // Players being loaded, with relationship changes written while they were loading
+    private final ConcurrentMap<UUID, List<Consumer<SocialPlayer>>> loading = new ConcurrentHashMap<>();
+    // Lifecycle of every player in memory; transitions happen inside compute, so they never interleave
+    private final ConcurrentMap<UUID, Lifecycle> lifecycles = new ConcurrentHashMap<>();
+    // Prefetched players whose login has not completed yet -> when the prefetch started
+    private final ConcurrentMap<UUID, Long> awaitingJoin = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final LongAdder readyCount = new LongAdder();
+    private final LongAdder readyNanos = new LongAdder();
+    private final AtomicLong readyMaxNanos = new AtomicLong();
+    private final LongAdder joinCount = new LongAdder();
+    private final LongAdder readyAtJoinCount = new LongAdder();
+    private final LongAdder awaitTimeouts = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+    private final LongAdder revivedCount = new LongAdder();
 
-    public PlayerManager(Storage storage) {
+    public PlayerManager(Storage storage, ProfileCache profileCache) {
         this.storage = storage;
+        this.profileCache = profileCache;
+    }
+
+    /**
+     * Starts loading a player as soon as their profile is known, before their login completes.
+     * If the login is denied the player is unloaded with {@link #abandonPrefetch}; if the connection
+     * just drops, on a later prefetch.
+     *
+     * @param playerId   The UUID of the player logging in.
+     * @param playerName Their name.
+     * @return A CompletableFuture that completes with the loaded player.
+     */
+    public CompletableFuture<SocialPlayer> prefetch(UUID playerId, String playerName) {
+        expireAbandonedPrefetches();
+        awaitingJoin.putIfAbsent(playerId, System.nanoTime());
+        return load(playerId, playerName);
     }
 
     /**
      * Handles the logic when a player joins the server.
-     * It loads the player's data into the cache.
+     * Their data is usually loaded or loading since {@link #prefetch}; otherwise the load starts here.
      *
      * @param player The player who joined.
      */
     public void handlePlayerJoin(Player player) {
-        storage.loadPlayer(player.getUniqueId(), player.getUsername()).thenAccept(socialPlayer -> {
-            loadedPlayers.put(player.getUniqueId(), socialPlayer);
+        indexName(player.getUniqueId(), player.getUsername());
+        awaitingJoin.remove(player.getUniqueId());
+        joinCount.increment();
+        if (load(player.getUniqueId(), player.getUsername()).isDone()) {
+            readyAtJoinCount.increment();
+        }
+    }
+
+    /**
+     * Unloads a prefetched player whose login was denied, without ever indexing them as online.
+     * A load still running is dropped once it finishes, unless the player logs in again first.
+     *
+     * @param playerId The UUID of the player whose login was denied.
+     */
+    public void abandonPrefetch(UUID playerId) {
+        if (awaitingJoin.remove(playerId) == null) {
+            return; // Joined already, or was never prefetched
+        }
+        lifecycles.compute(playerId, (id, lifecycle) -> {
+            if (lifecycle == null || lifecycle.state() == State.EVICTING) {
+                return lifecycle;
+            }
+            if (lifecycle.state() == State.LOADING) {
+                return lifecycle.withLeaving(true);
+            }
+            unload(lifecycle.player());
+            return null;
+        });
+    }
+
+    /**
+     * Waits for a player's data, e.g. to hold their login until it is ready.
+     *
+     * @param timeoutMillis How long to wait at most.
+     * @return A CompletableFuture that completes with the player, or with null if they are not
+     * loaded in time, failed to load or are not being loaded at all. It never completes exceptionally.
+     */
+    public CompletableFuture<SocialPlayer> awaitPlayer(UUID playerId, long timeoutMillis) {
+        Lifecycle lifecycle = lifecycles.get(playerId);
+        if (lifecycle == null || lifecycle.state() != State.LOADING) {
+            return CompletableFuture.completedFuture(loadedPlayers.get(playerId));
+        }
+        // A copy, so the timeout never completes the load everyone else is waiting for
+        return lifecycle.loaded().copy().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((socialPlayer, error) -> {
+                    if (error instanceof TimeoutException) {
+                        awaitTimeouts.increment();
+                    }
+                    return socialPlayer;
+                });
+    }
+
+    /**
+     * Makes a player ready: joins a load already running, takes back the profile of a player
+     * who left and whose final save is still running, or starts a new load.
+     *
+     * @return A CompletableFuture that completes with the player, shared by every caller while the load runs.
+     */
+    private CompletableFuture<SocialPlayer> load(UUID playerId, String playerName) {
+        CompletableFuture<SocialPlayer> started = new CompletableFuture<>();
+        Lifecycle current = lifecycles.compute(playerId, (id, lifecycle) -> {
+            if (lifecycle == null) {
+                return new Lifecycle(State.LOADING, null, started, SAVED, false);
+            }
+            return switch (lifecycle.state()) {
+                case LOADING -> {
+                    coalescedLoads.increment();
+                    // Rejoined before the load of the previous login finished
+                    yield lifecycle.leaving() ? lifecycle.withLeaving(false) : lifecycle;
+                }
+                case READY -> lifecycle;
+                case EVICTING -> {
+                    // The cached profile is at least as new as anything its save writes, no need to read it back
+                    revivedCount.increment();
+                    friendIndex.watch(lifecycle.player());
+                    loadedPlayers.put(id, lifecycle.player());
+                    yield ready(lifecycle.player(), lifecycle.saved());
+                }
+            };
+        });
+
+        if (current.state() == State.READY) {
+            return CompletableFuture.completedFuture(current.player());
+        }
+        if (current.loaded() != started) {
+            return current.loaded();
+        }
+
+        long startNanos = System.nanoTime();
+        List<Consumer<SocialPlayer>> pending = new ArrayList<>();
+        loading.put(playerId, pending);
+        storage.loadPlayer(playerId, playerName).whenComplete((socialPlayer, error) -> {
+            lifecycles.compute(playerId, (id, lifecycle) -> {
+                if (lifecycle == null || lifecycle.loaded() != started) {
+                    return lifecycle;
+                }
+                if (error != null || lifecycle.leaving()) {
+                    // Changes made meanwhile were written by their own storage operations
+                    loading.remove(id, pending);
+                    return null;
+                }
+                cacheLoadedPlayer(socialPlayer);
+                return ready(socialPlayer, lifecycle.saved());
+            });
+            if (error == null) {
+                recordReady(System.nanoTime() - startNanos);
+                started.complete(socialPlayer);
+            } else {
+                started.completeExceptionally(error);
+            }
         });
+        return started;
+    }
+
+    /**
+     * Builds the ready state of a player. Only called inside {@code lifecycles.compute}.
+     */
+    private static Lifecycle ready(SocialPlayer socialPlayer, CompletableFuture<Void> saved) {
+        return new Lifecycle(State.READY, socialPlayer, null, saved, false);
+    }
+
+    /**
+     * Unloads prefetched players whose login did not complete, e.g. because it was denied or the connection dropped.
+     */
+    private void expireAbandonedPrefetches() {
+        long now = System.nanoTime();
+        for (Map.Entry<UUID, Long> entry : awaitingJoin.entrySet()) {
+            UUID playerId = entry.getKey();
+            if (now - entry.getValue() < ABANDONED_PREFETCH_NANOS) {
+                continue;
+            }
+            lifecycles.compute(playerId, (id, lifecycle) -> {
+                if (lifecycle == null || lifecycle.state() != State.READY
+                        || !awaitingJoin.remove(id, entry.getValue())) {
+                    return lifecycle; // Still loading (checked again later) or joined meanwhile
+                }
+                unload(lifecycle.player());
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Drops a ready player who never joined, saving anything changed meanwhile.
+     * Only called inside {@code lifecycles.compute}.
+     */
+    private void unload(SocialPlayer abandoned) {
+        loadedPlayers.remove(abandoned.getPlayerId(), abandoned);
+        friendIndex.unwatch(abandoned);
+        if (abandoned.isDirty()) {
+            storage.savePlayer(abandoned);
+        }
+    }
+
+    private void recordReady(long elapsedNanos) {
+        readyCount.increment();
+        readyNanos.add(elapsedNanos);
+        readyMaxNanos.accumulateAndGet(elapsedNanos, Math::max);
     }
 
     /**
      * Handles the logic when a player leaves the server.
-     * It saves the player's data and removes them from the cache.
+     * It removes them from the cache and saves their data, forcing any buffered write out right away.
+     * Until that save finished, a reconnect gets the same profile back without reading storage,
+     * and a second save of the same player waits for it.
      *
      * @param player The player who left.
      */
     public void handlePlayerLeave(Player player) {
-        SocialPlayer socialPlayer = loadedPlayers.remove(player.getUniqueId());
-        if (socialPlayer != null) {
-            storage.savePlayer(socialPlayer);
+        UUID playerId = player.getUniqueId();
+        awaitingJoin.remove(playerId);
+        onlinePlayers.remove(playerId);
+        String name = namesById.remove(playerId);
+        if (name != null) {
+            playersByName.remove(name.toLowerCase(Locale.ROOT), playerId);
+        }
+        // Friend lists keep showing their name without a lookup
+        profileCache.put(playerId, player.getUsername());
+
+        Lifecycle evicting = lifecycles.compute(playerId, (id, lifecycle) -> {
+            if (lifecycle == null || lifecycle.state() == State.EVICTING) {
+                return lifecycle;
+            }
+            if (lifecycle.state() == State.LOADING) {
+                // Dropped once loaded, unless they rejoin first
+                return lifecycle.withLeaving(true);
+            }
+            SocialPlayer socialPlayer = lifecycle.player();
+            loadedPlayers.remove(id, socialPlayer);
+            friendIndex.unwatch(socialPlayer);
+            CompletableFuture<Void> saved = lifecycle.saved()
+                    .handle((ignored, error) -> null)
+                    .thenCompose(ignored -> CompletableFuture.allOf(
+                            storage.savePlayer(socialPlayer), storage.flush(id)));
+            return new Lifecycle(State.EVICTING, socialPlayer, null, saved, false);
+        });
+
+        if (evicting != null && evicting.state() == State.EVICTING) {
+            // Forgotten once persisted, unless a reconnect took the profile back
+            evicting.saved().whenComplete((ignored, error) -> lifecycles.remove(playerId, evicting));
+        }
+    }
+
+    /**
+     * Loads several players into the cache with a single bulk storage call.
+     * Used when players are already online, e.g. when the plugin is loaded late.
+     *
+     * @param players The players to load.
+     * @return A CompletableFuture that will complete when all players are cached.
+     */
+    public CompletableFuture<Void> loadPlayers(Collection<Player> players) {
+        if (players.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Map<UUID, String> names = new HashMap<>(players.size() * 2);
+        for (Player player : players) {
+            names.put(player.getUniqueId(), player.getUsername());
+            indexName(player.getUniqueId(), player.getUsername());
+            loading.put(player.getUniqueId(), new ArrayList<>());
+        }
+        return storage.loadPlayers(names)
+                .thenAccept(loaded -> loaded.values().forEach(socialPlayer ->
+                        lifecycles.compute(socialPlayer.getPlayerId(), (id, lifecycle) -> {
+                            if (lifecycle != null) {
+                                return lifecycle; // Already handled by a login
+                            }
+                            cacheLoadedPlayer(socialPlayer);
+                            return ready(socialPlayer, SAVED);
+                        })))
+                .whenComplete((ignored, error) -> names.keySet().forEach(loading::remove));
+    }
+
+    /**
+     * Puts a freshly loaded player in the cache, first applying any relationship change
+     * that was written while they were loading, since the load may have read the old rows.
+     */
+    private void cacheLoadedPlayer(SocialPlayer socialPlayer) {
+        loading.compute(socialPlayer.getPlayerId(), (playerId, pending) -> {
+            if (pending != null) {
+                pending.forEach(change -> change.accept(socialPlayer));
+            }
+            friendIndex.watch(socialPlayer);
+            loadedPlayers.put(playerId, socialPlayer);
+            // A player back under a new name drops the name views that still show the old one
+            profileCache.put(playerId, socialPlayer.getPlayerName());
+            return null;
+        });
+    }
+
+    /**
+     * Saves every cached player and waits for the final saves of players who just left.
+     * Players are saved in slices of bulk saves that run concurrently, so a large server
+     * is written over several connections instead of one. With write-behind storage the slices
+     * only queue the players, and the queue is then written at once in slices of the same size,
+     * without waiting for the next window. Used on shutdown.
+     *
+     * @param batchSize How many players each bulk save writes.
+     * @return A CompletableFuture that completes with the number of players saved, once all are persisted.
+     */
+    public CompletableFuture<Integer> saveAll(int batchSize) {
+        List<SocialPlayer> players = new ArrayList<>(loadedPlayers.values());
+        List<CompletableFuture<Void>> saves = new ArrayList<>();
+        for (int from = 0; from < players.size(); from += batchSize) {
+            saves.add(storage.savePlayers(new ArrayList<>(
+                    players.subList(from, Math.min(players.size(), from + batchSize)))));
+        }
+        int evicting = 0;
+        for (Lifecycle lifecycle : lifecycles.values()) {
+            if (lifecycle.state() == State.EVICTING) {
+                saves.add(lifecycle.saved());
+                evicting++;
+            }
+        }
+        // Buffered saves are written now instead of on the next write-behind window
+        saves.add(storage.flushAll(batchSize));
+
+        int total = players.size() + evicting;
+        return CompletableFuture.allOf(saves.toArray(new CompletableFuture[0])).thenApply(ignored -> total);
+    }
+
+    /**
+     * Changes the relationship between two players and persists it with a single storage operation.
+     * <p>
+     * Each change is applied right away to the player if they are cached. A player that is not
+     * cached is never loaded; storage updates their rows directly, and once it did, the change is
+     * also applied if they logged in meanwhile. The change is dropped from the players' tracked
+     * changes, so their own saves do not write it again. If the operation fails, storage kept
+     * neither side, so the change is undone on both cached players and the returned future fails.
+     *
+     * @param firstChange  The change to the first player, must be safe to apply twice.
+     * @param secondChange The change to the second player, must be safe to apply twice.
+     * @param operation    Runs the storage operation, e.g. {@link Storage#createRequest}.
+     * @return A CompletableFuture that will complete when the change is persisted,
+     * or exceptionally once it was undone.
+     */
+    public CompletableFuture<Void> changeRelationship(UUID firstId, Consumer<SocialPlayer> firstChange,
+            UUID secondId, Consumer<SocialPlayer> secondChange,
+            Function<Storage, CompletableFuture<Void>> operation) {
+        Consumer<SocialPlayer> first = player -> {
+            firstChange.accept(player);
+            player.markSynced(secondId);
+        };
+        Consumer<SocialPlayer> second = player -> {
+            secondChange.accept(player);
+            player.markSynced(firstId);
+        };
+
+        SocialPlayer firstCached = getInMemory(firstId);
+        SocialPlayer secondCached = getInMemory(secondId);
+        SocialPlayer.Relationship firstBefore = null;
+        SocialPlayer.Relationship secondBefore = null;
+        if (firstCached != null) {
+            firstBefore = firstCached.getRelationship(secondId);
+            first.accept(firstCached);
+        }
+        if (secondCached != null) {
+            secondBefore = secondCached.getRelationship(firstId);
+            second.accept(secondCached);
+        }
+
+        SocialPlayer.Relationship firstRestore = firstBefore;
+        SocialPlayer.Relationship secondRestore = secondBefore;
+        return operation.apply(storage).whenComplete((ignored, error) -> {
+            if (error != null) {
+                // The operation is atomic, so neither side was written: put both back as they were
+                if (firstCached != null) {
+                    firstCached.restoreRelationship(firstRestore);
+                }
+                if (secondCached != null) {
+                    secondCached.restoreRelationship(secondRestore);
+                }
+                return;
+            }
+            if (firstCached == null) {
+                reconcile(firstId, first);
+            }
+            if (secondCached == null) {
+                reconcile(secondId, second);
+            }
+        });
+    }
+
+    /**
+     * Gets a player whose profile is in memory: loaded, or left with their final save still running.
+     * The latter may be handed back on reconnect, so changes have to reach it too.
+     */
+    private SocialPlayer getInMemory(UUID playerId) {
+        Lifecycle lifecycle = lifecycles.get(playerId);
+        return lifecycle != null ? lifecycle.player() : null;
+    }
+
+    /**
+     * Applies a persisted change to a player that was offline when it was made,
+     * in case they logged in since. Serialized with {@link #cacheLoadedPlayer}.
+     */
+    private void reconcile(UUID playerId, Consumer<SocialPlayer> change) {
+        loading.compute(playerId, (id, pending) -> {
+            if (pending != null) {
+                // Still loading, applied once the load finishes
+                pending.add(change);
+                return pending;
+            }
+            SocialPlayer socialPlayer = loadedPlayers.get(id);
+            if (socialPlayer != null) {
+                change.accept(socialPlayer);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Points a name at a player, replacing the name they had before.
+     * A name taken over by someone else (after a name change) simply points at the newest player.
+     */
+    private void indexName(UUID playerId, String name) {
+        onlinePlayers.add(playerId);
+        String folded = name.toLowerCase(Locale.ROOT);
+        String previous = namesById.put(playerId, name);
+        if (previous != null && !previous.equalsIgnoreCase(name)) {
+            playersByName.remove(previous.toLowerCase(Locale.ROOT), playerId);
         }
+        playersByName.put(folded, playerId);
+    }
+
+    /**
+     * Looks up an online player by name, ignoring case.
+     *
+     * @return The UUID, or null if no online player has that name.
+     */
+    public UUID getPlayerId(String name) {
+        return playersByName.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Gets the names of online players starting with a prefix, ignoring case, in alphabetical order.
+     * Only the matching range of the index is visited, so the cost does not grow with the player count.
+     *
+     * @param prefix  The typed prefix, may be empty.
+     * @param exclude A player to leave out (usually the one typing), or null.
+     * @param limit   The maximum number of names returned.
+     */
+    public List<String> getOnlineNamesStartingWith(String prefix, UUID exclude, int limit) {
+        String folded = prefix.toLowerCase(Locale.ROOT);
+        List<String> names = new ArrayList<>(Math.min(limit, 16));
+        for (Map.Entry<String, UUID> entry : playersByName.tailMap(folded).entrySet()) {
+            if (names.size() >= limit || !entry.getKey().startsWith(folded)) {
+                break;
+            }
+            if (entry.getValue().equals(exclude)) {
+                continue;
+            }
+            String name = namesById.get(entry.getValue());
+            if (name != null) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Looks up any player who joined before by name, ignoring case.
+     * Online players are answered from the index; others with a single storage lookup.
+     *
+     * @return A CompletableFuture that completes with the UUID, or null if the player never joined.
+     */
+    public CompletableFuture<UUID> findPlayerId(String name) {
+        UUID playerId = getPlayerId(name);
+        if (playerId != null) {
+            return CompletableFuture.completedFuture(playerId);
+        }
+        return storage.findPlayerId(name);
+    }
+
+    /**
+     * Gets a player's name if it is known without going to storage.
+     *
+     * @return The name, or null if the player is neither loaded nor in the profile cache.
+     */
+    public String getPlayerName(UUID playerId) {
+        SocialPlayer loaded = loadedPlayers.get(playerId);
+        return loaded != null ? loaded.getPlayerName() : profileCache.getIfPresent(playerId);
+    }
+
+    /**
+     * Gets the names of several players, online or not.
+     * Offline players come from the profile cache, which loads its misses in bulk.
+     *
+     * @return A CompletableFuture that completes with the names, keyed by UUID. Unknown players are left out.
+     */
+    public CompletableFuture<Map<UUID, String>> getPlayerNames(Collection<UUID> playerIds) {
+        Map<UUID, String> names = new HashMap<>(playerIds.size() * 2);
+        List<UUID> offline = new ArrayList<>();
+        for (UUID playerId : playerIds) {
+            SocialPlayer loaded = loadedPlayers.get(playerId);
+            if (loaded != null) {
+                names.put(playerId, loaded.getPlayerName());
+            } else {
+                offline.add(playerId);
+            }
+        }
+        if (offline.isEmpty()) {
+            return CompletableFuture.completedFuture(names);
+        }
+        return profileCache.getNames(offline).thenApply(loaded -> {
+            names.putAll(loaded);
+            return names;
+        });
+    }
+
+    /**
+     * Gets the sorted names of a player's friends for completion,
+     * building the view if the friend list or any known name changed.
+     */
+    public CompletableFuture<SortedNameView> getFriendNames(SocialPlayer player) {
+        int namesVersion = profileCache.getNamesVersion();
+        SortedNameView cached = player.getFriendNames(namesVersion);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        int version = player.getFriendsVersion();
+        return getPlayerNames(new ArrayList<>(player.getFriends())).thenApply(names -> {
+            SortedNameView view = SortedNameView.of(names.values());
+            player.setFriendNames(view, version, namesVersion);
+            return view;
+        });
+    }
+
+    /**
+     * Gets the sorted names of the players who sent a player a request,
+     * building the view if the incoming requests or any known name changed.
+     */
+    public CompletableFuture<SortedNameView> getIncomingRequestNames(SocialPlayer player) {
+        int namesVersion = profileCache.getNamesVersion();
+        SortedNameView cached = player.getIncomingRequestNames(namesVersion);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        int version = player.getIncomingRequestsVersion();
+        return getPlayerNames(new ArrayList<>(player.getIncomingRequests())).thenApply(names -> {
+            SortedNameView view = SortedNameView.of(names.values());
+            player.setIncomingRequestNames(view, version, namesVersion);
+            return view;
+        });
+    }
+
+    /**
+     * Gets the loaded players who have a player as a friend, without scanning everyone online.
+     * The result may include a friendship removed a moment ago, so check the friend list before acting.
+     *
+     * @return A snapshot of their UUIDs.
+     */
+    public Set<UUID> getPlayersWithFriend(UUID friendId) {
+        return friendIndex.getPlayersWithFriend(friendId);
+    }
+
+    /**
+     * Gets which of a player's friends are online, with one bitmap intersection.
+     */
+    public Set<UUID> getOnlineFriends(SocialPlayer player) {
+        return player.getFriendsIn(onlinePlayers);
+    }
+
+    public ProfileCache getProfileCache() {
+        return profileCache;
+    }
+
+    // --- Metrics ---
+
+    /**
+     * Number of players loaded on demand (at login), excluding bulk loads.
+     */
+    public long getReadyCount() {
+        return readyCount.sum();
+    }
+
+    /**
+     * Average time from the start of a player's load until their data was ready, in milliseconds.
+     */
+    public double getAverageReadyMillis() {
+        long count = readyCount.sum();
+        return count == 0 ? 0 : readyNanos.sum() / (double) count / 1_000_000.0;
+    }
+
+    /**
+     * Slowest time until a player's data was ready, in milliseconds.
+     */
+    public double getMaxReadyMillis() {
+        return readyMaxNanos.get() / 1_000_000.0;
+    }
+
+    public long getJoinCount() {
+        return joinCount.sum();
+    }
+
+    /**
+     * Number of joins whose data was already loaded when the login completed.
+     */
+    public long getReadyAtJoinCount() {
+        return readyAtJoinCount.sum();
+    }
+
+    /**
+     * Number of loads that joined one already running for the same player instead of reading storage again.
+     */
+    public long getCoalescedLoads() {
+        return coalescedLoads.sum();
+    }
+
+    /**
+     * Number of reconnects that got their profile back from memory while its final save was still running.
+     */
+    public long getRevivedCount() {
+        return revivedCount.sum();
+    }
+
+    /**
+     * Number of waits for a player's data that gave up, e.g. logins let in before their data was ready.
+     */
+    public long getAwaitTimeouts() {
+        return awaitTimeouts.sum();
     }
 
     /**
@@ -58,4 +692,32 @@ public class PlayerManager {
     public ConcurrentMap<UUID, SocialPlayer> getLoadedPlayers() {
         return loadedPlayers;
     }
+
+    /**
+     * The lifecycle states of a player in memory. A player with no lifecycle is not in memory at all.
+     */
+    private enum State {
+        // Being read from storage; everyone asking for the player shares the same load
+        LOADING,
+        // Cached and online
+        READY,
+        // Left; the final save is running and the profile can still be handed back on reconnect
+        EVICTING
+    }
+
+    /**
+     * The lifecycle of one player. Immutable, every transition replaces it.
+     *
+     * @param player  The profile, null while loading.
+     * @param loaded  The shared load, only while loading.
+     * @param saved   The last final save, a later one starts once it is done.
+     * @param leaving Whether the player left while loading, so the profile is dropped once loaded.
+     */
+    private record Lifecycle(State state, SocialPlayer player, CompletableFuture<SocialPlayer> loaded,
+            CompletableFuture<Void> saved, boolean leaving) {
+
+        private Lifecycle withLeaving(boolean leaving) {
+            return new Lifecycle(state, player, loaded, saved, leaving);
+        }
+    }
 }
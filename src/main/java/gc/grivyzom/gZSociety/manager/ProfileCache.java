@@ -0,0 +1,194 @@
+package gc.grivyzom.gZSociety.manager;
+
+import gc.grivyzom.gZSociety.storage.Storage;
+import org.spongepowered.configurate.ConfigurationNode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A read-through cache of the names of offline players.
+ * Friend lists and tab completion need names for players who are not loaded;
+ * misses are fetched in a single bulk lookup instead of one query per player.
+ * <p>
+ * Entries expire after a fixed time, so a name change made elsewhere is picked up eventually,
+ * and the least recently used entries are evicted once the cache is full.
+ * <p>
+ * A names version changes whenever the cache learns a name or a name changes,
+ * so views built from earlier names (e.g. sorted friend names) know to rebuild.
+ */
+public class ProfileCache {
+
+    private final Storage storage;
+    private final int maxSize;
+    private final long ttlNanos;
+    // Access-ordered, so the eldest entry is the least recently used one. Guarded by itself.
+    private final LinkedHashMap<UUID, Entry> entries;
+    private final AtomicInteger namesVersion = new AtomicInteger();
+
+    // Metrics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ProfileCache(Storage storage, ConfigurationNode cacheConfig) {
+        this.storage = storage;
+        this.maxSize = Math.max(1, cacheConfig.node("max-size").getInt(5000));
+        this.ttlNanos = TimeUnit.MINUTES.toNanos(Math.max(1, cacheConfig.node("ttl-minutes").getInt(30)));
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets a cached name without going to storage.
+     *
+     * @return The name, or null if it is not cached or has expired.
+     */
+    public String getIfPresent(UUID playerId) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            String name = lookup(playerId, now);
+            if (name != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+            }
+            return name;
+        }
+    }
+
+    /**
+     * Gets the names of several players, loading the missing ones from storage in one go.
+     *
+     * @return A CompletableFuture that completes with the names, keyed by UUID. Unknown players are left out.
+     */
+    public CompletableFuture<Map<UUID, String>> getNames(Collection<UUID> playerIds) {
+        Map<UUID, String> names = new HashMap<>(playerIds.size() * 2);
+        List<UUID> missing = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (entries) {
+            for (UUID playerId : playerIds) {
+                String name = lookup(playerId, now);
+                if (name != null) {
+                    names.put(playerId, name);
+                } else {
+                    missing.add(playerId);
+                }
+            }
+        }
+        hits.add(names.size());
+        misses.add(missing.size());
+
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(names);
+        }
+        return storage.loadNames(missing).thenApply(loaded -> {
+            putAll(loaded);
+            names.putAll(loaded);
+            return names;
+        });
+    }
+
+    /**
+     * Records a name that is known to be current, e.g. of a player who just left.
+     */
+    public void put(UUID playerId, String name) {
+        long expiresAt = System.nanoTime() + ttlNanos;
+        synchronized (entries) {
+            store(playerId, name, expiresAt);
+        }
+    }
+
+    private void putAll(Map<UUID, String> names) {
+        long expiresAt = System.nanoTime() + ttlNanos;
+        synchronized (entries) {
+            names.forEach((playerId, name) -> store(playerId, name, expiresAt));
+        }
+    }
+
+    /**
+     * Stores an entry, bumping the names version if the name is new or different. Needs the entries lock.
+     */
+    private void store(UUID playerId, String name, long expiresAt) {
+        Entry previous = entries.put(playerId, new Entry(name, expiresAt));
+        if (previous == null || !previous.name().equals(name)) {
+            namesVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets a number that changes whenever a name is learned or changes.
+     * Read it before reading the names a view is built from.
+     */
+    public int getNamesVersion() {
+        return namesVersion.get();
+    }
+
+    /**
+     * Gets a fresh entry, dropping it if it has expired. Needs the entries lock.
+     */
+    private String lookup(UUID playerId, long now) {
+        Entry entry = entries.get(playerId);
+        if (entry == null) {
+            return null;
+        }
+        if (now - entry.expiresAt() >= 0) {
+            entries.remove(playerId);
+            evictions.increment();
+            return null;
+        }
+        return entry.name();
+    }
+
+    // --- Metrics ---
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Entries dropped because the cache was full or they expired.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Share of lookups answered without going to storage, from 0 to 1.
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : hitCount / (double) total;
+    }
+
+    private record Entry(String name, long expiresAt) {
+    }
+}
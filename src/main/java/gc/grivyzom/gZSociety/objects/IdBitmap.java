@@ -0,0 +1,430 @@
+package gc.grivyzom.gZSociety.objects;
+
+import java.util.Arrays;
+
+/**
+ * An immutable compressed bitmap of non-negative int ids, laid out like a Roaring bitmap.
+ * Ids are split by their high 16 bits into chunks. A chunk holding few ids is a sorted array
+ * of their low 16 bits; one holding more than {@value #ARRAY_MAX} is a 65536-bit bitmap,
+ * so intersecting two large chunks is a word-parallel AND.
+ * <p>
+ * Every change returns a new bitmap sharing the untouched chunks with the old one,
+ * so many ids known up front should be put in with {@link #of(int[])} instead of one by one.
+ */
+final class IdBitmap {
+
+    static final IdBitmap EMPTY = new IdBitmap(new char[0], new Container[0], 0);
+
+    // Beyond this many ids a sorted array takes more room than a bitmap (8 KiB)
+    private static final int ARRAY_MAX = 4096;
+
+    private final char[] keys; // Sorted high 16 bits of each chunk
+    private final Container[] containers;
+    private final int cardinality;
+
+    private IdBitmap(char[] keys, Container[] containers, int cardinality) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Builds a bitmap of many ids at once, in O(n log n) instead of one copy per id.
+     *
+     * @param ids The ids in any order, duplicates allowed.
+     */
+    static IdBitmap of(int[] ids) {
+        if (ids.length == 0) {
+            return EMPTY;
+        }
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+
+        // At most one chunk per id, and one per high 16 bits value in range
+        int maxChunks = Math.min(sorted.length, (sorted[sorted.length - 1] >>> 16) - (sorted[0] >>> 16) + 1);
+        char[] keys = new char[maxChunks];
+        Container[] containers = new Container[keys.length];
+        int chunks = 0;
+        int total = 0;
+        int start = 0;
+        while (start < sorted.length) {
+            char key = (char) (sorted[start] >>> 16);
+            int end = start;
+            while (end < sorted.length && sorted[end] >>> 16 == key) {
+                end++;
+            }
+            char[] values = new char[end - start];
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                char low = (char) sorted[i];
+                if (count == 0 || values[count - 1] != low) {
+                    values[count++] = low;
+                }
+            }
+            values = Arrays.copyOf(values, count);
+            keys[chunks] = key;
+            containers[chunks++] = count > ARRAY_MAX ? BitmapContainer.of(values) : new ArrayContainer(values);
+            total += count;
+            start = end;
+        }
+        return new IdBitmap(Arrays.copyOf(keys, chunks), Arrays.copyOf(containers, chunks), total);
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean contains(int id) {
+        int index = Arrays.binarySearch(keys, (char) (id >>> 16));
+        return index >= 0 && containers[index].contains((char) id);
+    }
+
+    /**
+     * @return A bitmap that also holds the id, or this one if it already did.
+     */
+    IdBitmap add(int id) {
+        char key = (char) (id >>> 16);
+        int index = Arrays.binarySearch(keys, key);
+        if (index >= 0) {
+            Container updated = containers[index].add((char) id);
+            if (updated == containers[index]) {
+                return this;
+            }
+            Container[] newContainers = containers.clone();
+            newContainers[index] = updated;
+            return new IdBitmap(keys, newContainers, cardinality + 1);
+        }
+
+        int position = -index - 1;
+        char[] newKeys = new char[keys.length + 1];
+        Container[] newContainers = new Container[containers.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, position);
+        System.arraycopy(containers, 0, newContainers, 0, position);
+        newKeys[position] = key;
+        newContainers[position] = new ArrayContainer(new char[]{(char) id});
+        System.arraycopy(keys, position, newKeys, position + 1, keys.length - position);
+        System.arraycopy(containers, position, newContainers, position + 1, containers.length - position);
+        return new IdBitmap(newKeys, newContainers, cardinality + 1);
+    }
+
+    /**
+     * @return A bitmap without the id, or this one if it did not hold it.
+     */
+    IdBitmap remove(int id) {
+        int index = Arrays.binarySearch(keys, (char) (id >>> 16));
+        if (index < 0) {
+            return this;
+        }
+        Container current = containers[index];
+        Container updated = current.remove((char) id);
+        if (updated == current) {
+            return this;
+        }
+        if (cardinality == 1) {
+            return EMPTY;
+        }
+        if (updated != null) {
+            Container[] newContainers = containers.clone();
+            newContainers[index] = updated;
+            return new IdBitmap(keys, newContainers, cardinality - 1);
+        }
+
+        // The chunk is now empty, drop it
+        char[] newKeys = new char[keys.length - 1];
+        Container[] newContainers = new Container[containers.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(containers, 0, newContainers, 0, index);
+        System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+        System.arraycopy(containers, index + 1, newContainers, index, containers.length - index - 1);
+        return new IdBitmap(newKeys, newContainers, cardinality - 1);
+    }
+
+    /**
+     * Intersects two bitmaps, visiting only the chunks present in both.
+     */
+    IdBitmap and(IdBitmap other) {
+        int max = Math.min(keys.length, other.keys.length);
+        char[] newKeys = new char[max];
+        Container[] newContainers = new Container[max];
+        int count = 0;
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container common = containers[i].and(other.containers[j]);
+                if (common != null) {
+                    newKeys[count] = keys[i];
+                    newContainers[count++] = common;
+                    total += common.cardinality();
+                }
+                i++;
+                j++;
+            }
+        }
+        if (count == 0) {
+            return EMPTY;
+        }
+        return new IdBitmap(Arrays.copyOf(newKeys, count), Arrays.copyOf(newContainers, count), total);
+    }
+
+    /**
+     * Counts the ids two bitmaps have in common, without building the intersection.
+     */
+    int andCardinality(IdBitmap other) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Gets every id in ascending order.
+     */
+    int[] toArray() {
+        int[] ids = new int[cardinality];
+        int offset = 0;
+        for (int i = 0; i < keys.length; i++) {
+            offset = containers[i].copyTo(ids, offset, keys[i] << 16);
+        }
+        return ids;
+    }
+
+    /**
+     * The low 16 bits of the ids in one chunk. Immutable; changes return a new container.
+     */
+    private interface Container {
+
+        int cardinality();
+
+        boolean contains(char low);
+
+        /**
+         * @return The container with the value added, or this one if it was already there.
+         */
+        Container add(char low);
+
+        /**
+         * @return The container without the value, this one if it was not there, or null once empty.
+         */
+        Container remove(char low);
+
+        /**
+         * @return The values both containers hold, or null if none.
+         */
+        Container and(Container other);
+
+        int andCardinality(Container other);
+
+        /**
+         * Writes the ids, with the chunk's high bits applied, into an array.
+         *
+         * @return The offset after the last id written.
+         */
+        int copyTo(int[] ids, int offset, int high);
+    }
+
+    /**
+     * A sparse chunk, stored as sorted values.
+     */
+    private record ArrayContainer(char[] values) implements Container {
+
+        @Override
+        public int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return Arrays.binarySearch(values, low) >= 0;
+        }
+
+        @Override
+        public Container add(char low) {
+            int index = Arrays.binarySearch(values, low);
+            if (index >= 0) {
+                return this;
+            }
+            if (values.length == ARRAY_MAX) {
+                return BitmapContainer.of(values).add(low);
+            }
+            int position = -index - 1;
+            char[] updated = new char[values.length + 1];
+            System.arraycopy(values, 0, updated, 0, position);
+            updated[position] = low;
+            System.arraycopy(values, position, updated, position + 1, values.length - position);
+            return new ArrayContainer(updated);
+        }
+
+        @Override
+        public Container remove(char low) {
+            int index = Arrays.binarySearch(values, low);
+            if (index < 0) {
+                return this;
+            }
+            if (values.length == 1) {
+                return null;
+            }
+            char[] updated = new char[values.length - 1];
+            System.arraycopy(values, 0, updated, 0, index);
+            System.arraycopy(values, index + 1, updated, index, values.length - index - 1);
+            return new ArrayContainer(updated);
+        }
+
+        @Override
+        public Container and(Container other) {
+            char[] common = new char[Math.min(values.length, other.cardinality())];
+            int count = 0;
+            if (other instanceof ArrayContainer array) {
+                // Merge of two sorted arrays
+                int i = 0;
+                int j = 0;
+                while (i < values.length && j < array.values.length) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        common[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (char value : values) {
+                    if (other.contains(value)) {
+                        common[count++] = value;
+                    }
+                }
+            }
+            return count == 0 ? null : new ArrayContainer(Arrays.copyOf(common, count));
+        }
+
+        @Override
+        public int andCardinality(Container other) {
+            Container common = and(other);
+            return common != null ? common.cardinality() : 0;
+        }
+
+        @Override
+        public int copyTo(int[] ids, int offset, int high) {
+            for (char value : values) {
+                ids[offset++] = high | value;
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * A dense chunk, one bit per possible value.
+     */
+    private record BitmapContainer(long[] words, int cardinality) implements Container {
+
+        private static BitmapContainer of(char[] values) {
+            long[] words = new long[1024];
+            for (char value : values) {
+                words[value >>> 6] |= 1L << value;
+            }
+            return new BitmapContainer(words, values.length);
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        public Container add(char low) {
+            if (contains(low)) {
+                return this;
+            }
+            long[] updated = words.clone();
+            updated[low >>> 6] |= 1L << low;
+            return new BitmapContainer(updated, cardinality + 1);
+        }
+
+        @Override
+        public Container remove(char low) {
+            if (!contains(low)) {
+                return this;
+            }
+            long[] updated = words.clone();
+            updated[low >>> 6] &= ~(1L << low);
+            return shrink(updated, cardinality - 1);
+        }
+
+        @Override
+        public Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] common = new long[1024];
+            int count = 0;
+            for (int i = 0; i < common.length; i++) {
+                common[i] = words[i] & otherWords[i];
+                count += Long.bitCount(common[i]);
+            }
+            return count == 0 ? null : shrink(common, count);
+        }
+
+        @Override
+        public int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                count += Long.bitCount(words[i] & otherWords[i]);
+            }
+            return count;
+        }
+
+        @Override
+        public int copyTo(int[] ids, int offset, int high) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    ids[offset++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        /**
+         * Turns bits back into a sorted array once they fit in one.
+         */
+        private static Container shrink(long[] words, int cardinality) {
+            if (cardinality > ARRAY_MAX) {
+                return new BitmapContainer(words, cardinality);
+            }
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package gc.grivyzom.gZSociety.objects;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A snapshot of the row-level changes made to a {@link SocialPlayer} since it was last saved.
+ * Produced by {@link SocialPlayer#drainChanges()} and consumed by storage implementations.
+ */
+public final class PendingChanges {
+
+    private final boolean settingsChanged;
+    private final Map<UUID, Boolean> upsertedFriends;
+    private final Set<UUID> removedFriends;
+    private final Set<UUID> addedRequests;
+    private final Set<UUID> removedRequests;
+    private final Set<UUID> addedIncomingRequests;
+    private final Set<UUID> removedIncomingRequests;
+
+    PendingChanges(boolean settingsChanged, Map<UUID, Boolean> upsertedFriends, Set<UUID> removedFriends,
+            Set<UUID> addedRequests, Set<UUID> removedRequests,
+            Set<UUID> addedIncomingRequests, Set<UUID> removedIncomingRequests) {
+        this.settingsChanged = settingsChanged;
+        this.upsertedFriends = Collections.unmodifiableMap(upsertedFriends);
+        this.removedFriends = Collections.unmodifiableSet(removedFriends);
+        this.addedRequests = Collections.unmodifiableSet(addedRequests);
+        this.removedRequests = Collections.unmodifiableSet(removedRequests);
+        this.addedIncomingRequests = Collections.unmodifiableSet(addedIncomingRequests);
+        this.removedIncomingRequests = Collections.unmodifiableSet(removedIncomingRequests);
+    }
+
+    /**
+     * Checks if the player's settings (e.g. notifications) changed.
+     */
+    public boolean isSettingsChanged() {
+        return settingsChanged;
+    }
+
+    /**
+     * Friends that were added or whose best-friend flag changed, mapped to the current flag.
+     */
+    public Map<UUID, Boolean> getUpsertedFriends() {
+        return upsertedFriends;
+    }
+
+    public Set<UUID> getRemovedFriends() {
+        return removedFriends;
+    }
+
+    /**
+     * Outgoing friend requests that were sent.
+     */
+    public Set<UUID> getAddedRequests() {
+        return addedRequests;
+    }
+
+    /**
+     * Outgoing friend requests that were cancelled, accepted or denied.
+     */
+    public Set<UUID> getRemovedRequests() {
+        return removedRequests;
+    }
+
+    /**
+     * Senders of incoming friend requests that were received. The rows belong to the senders.
+     */
+    public Set<UUID> getAddedIncomingRequests() {
+        return addedIncomingRequests;
+    }
+
+    /**
+     * Senders of incoming friend requests that were accepted, denied or dropped (e.g. by blocking them).
+     */
+    public Set<UUID> getRemovedIncomingRequests() {
+        return removedIncomingRequests;
+    }
+
+    public boolean isEmpty() {
+        return !settingsChanged && upsertedFriends.isEmpty() && removedFriends.isEmpty()
+                && addedRequests.isEmpty() && removedRequests.isEmpty()
+                && addedIncomingRequests.isEmpty() && removedIncomingRequests.isEmpty();
+    }
+}
@@ -0,0 +1,167 @@
+package gc.grivyzom.gZSociety.objects;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide dictionary giving the player UUIDs held by relationship sets a dense int id.
+ * Relationship sets store these ids in bitmaps instead of 128-bit UUIDs,
+ * and each UUID object is kept only once, here.
+ * <p>
+ * Ids are reference-counted by the sets holding them ({@link #acquire}, {@link #release}),
+ * and a set gives its ids back when it is emptied or garbage collected. An id no set holds is
+ * forgotten after a minute and handed to another UUID, so the dictionary stays as large as
+ * the players in resident sets, not every player seen since startup.
+ * It is in memory only; storage keeps using UUIDs.
+ */
+public final class PlayerIdDictionary {
+
+    // A released id is only given to another UUID after this long, so a short-lived view derived
+    // from a set that held it (an intersection, an iterator's snapshot) never reads back the wrong UUID
+    private static final long REUSE_DELAY_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private static final PlayerIdDictionary GLOBAL = new PlayerIdDictionary();
+
+    private final ConcurrentMap<UUID, Integer> ids = new ConcurrentHashMap<>();
+    // Id -> UUID; a slot is written before its id is handed out, and only rewritten when the id is reused
+    private volatile UUID[] uuids = new UUID[1024];
+
+    // Guarded by this
+    private int[] references = new int[1024]; // Number of sets holding each id
+    private long[] releasedAt = new long[1024]; // When each id was last left without sets
+    private final ArrayDeque<Released> released = new ArrayDeque<>(); // Ids left without sets, oldest first
+    private final ArrayDeque<Integer> free = new ArrayDeque<>(); // Forgotten ids, ready for reuse
+    private int nextId;
+
+    private PlayerIdDictionary() {
+    }
+
+    public static PlayerIdDictionary global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Gets the id of a UUID for a set that starts holding it, assigning one if it has none yet.
+     * Every call must be matched by a {@link #release} once the set stops holding it.
+     */
+    public synchronized int acquire(UUID uuid) {
+        expireReleased(System.nanoTime());
+        return acquireOne(uuid);
+    }
+
+    /**
+     * Acquires the ids of many UUIDs at once, see {@link #acquire}.
+     *
+     * @return The ids, in the order of the UUIDs.
+     */
+    public synchronized int[] acquireAll(Collection<? extends UUID> uuids) {
+        expireReleased(System.nanoTime());
+        int[] acquired = new int[uuids.size()];
+        int index = 0;
+        for (UUID uuid : uuids) {
+            acquired[index++] = acquireOne(uuid);
+        }
+        return acquired;
+    }
+
+    /**
+     * Gives back an id a set no longer holds.
+     */
+    public synchronized void release(int id) {
+        long now = System.nanoTime();
+        releaseOne(id, now);
+        expireReleased(now);
+    }
+
+    /**
+     * Gives back many ids at once, see {@link #release}.
+     */
+    public synchronized void releaseAll(int[] ids) {
+        long now = System.nanoTime();
+        for (int id : ids) {
+            releaseOne(id, now);
+        }
+        expireReleased(now);
+    }
+
+    /**
+     * Gets the id of a UUID without assigning one.
+     *
+     * @return The id, or -1 if no set holds the UUID.
+     */
+    public int find(UUID uuid) {
+        Integer id = ids.get(uuid);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Gets the UUID of an id returned by {@link #acquire}.
+     */
+    public UUID get(int id) {
+        return uuids[id];
+    }
+
+    /**
+     * Number of UUIDs with an id, including those released recently and not forgotten yet.
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    private int acquireOne(UUID uuid) {
+        Integer id = ids.get(uuid);
+        int assigned = id != null ? id : assign(uuid);
+        references[assigned]++;
+        return assigned;
+    }
+
+    private void releaseOne(int id, long now) {
+        if (--references[id] == 0) {
+            releasedAt[id] = now;
+            released.add(new Released(id, now));
+        }
+    }
+
+    private int assign(UUID uuid) {
+        Integer reused = free.poll();
+        int assigned = reused != null ? reused : nextId++;
+        UUID[] current = uuids;
+        if (assigned == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            references = Arrays.copyOf(references, current.length);
+            releasedAt = Arrays.copyOf(releasedAt, current.length);
+        }
+        current[assigned] = uuid;
+        // Volatile write, publishes the slot before anyone can read the id
+        uuids = current;
+        ids.put(uuid, assigned);
+        return assigned;
+    }
+
+    /**
+     * Forgets the ids that have been without sets for long enough, making them free for reuse.
+     */
+    private void expireReleased(long now) {
+        Released oldest;
+        while ((oldest = released.peek()) != null) {
+            int id = oldest.id();
+            if (references[id] == 0 && releasedAt[id] == oldest.atNanos()) {
+                if (now - oldest.atNanos() < REUSE_DELAY_NANOS) {
+                    return;
+                }
+                ids.remove(uuids[id], id);
+                free.add(id);
+            }
+            // Otherwise acquired again since, or released again later and queued again
+            released.poll();
+        }
+    }
+
+    private record Released(int id, long atNanos) {
+    }
+}
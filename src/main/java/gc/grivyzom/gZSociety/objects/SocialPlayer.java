@@ -1,9 +1,17 @@
 package gc.grivyzom.gZSociety.objects;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents a player's social data, including friends, blocked players, etc.
@@ -14,22 +22,65 @@ public class SocialPlayer {
     private final UUID playerId;
     private final String playerName;
 
-    // Using ConcurrentHashMap for thread-safe collections
-    private final Set<UUID> friends = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    private final Set<UUID> bestFriends = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    private final Set<UUID> ignored = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    private final Set<UUID> blocked = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // Compact bitmap sets of player ids: read far more often than changed, and kept for every loaded player.
+    // Each change copies part of a bitmap, so stored profiles are loaded through a Builder instead.
+    private final UuidSet friends;
+    private final UuidSet bestFriends;
+    private final UuidSet ignored = new UuidSet();
+    private final UuidSet blocked = new UuidSet();
 
     // Friend request system
-    private final Set<UUID> outgoingRequests = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    private final Set<UUID> incomingRequests = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final UuidSet outgoingRequests;
+    private final UuidSet incomingRequests;
 
     // Settings
     private boolean notificationsEnabled = true;
 
+    // Set whenever the in-memory state diverges from what was last persisted
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    // Change tracking, so storage can persist only the rows that changed.
+    // These hold the ids that were touched; the row state is read when draining.
+    private final Set<UUID> changedFriends = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Set<UUID> changedRequests = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Set<UUID> changedIncomingRequests = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicBoolean settingsChanged = new AtomicBoolean(false);
+    private final AtomicBoolean fullSyncRequired = new AtomicBoolean(false);
+
+    // Name views for tab completion, built lazily. A view is dropped once the set it was built from
+    // gains or loses a player, or the names it was built from change.
+    private final AtomicInteger friendsVersion = new AtomicInteger();
+    private final AtomicInteger incomingRequestsVersion = new AtomicInteger();
+    private volatile CachedView friendNames;
+    private volatile CachedView incomingRequestNames;
+
+    // Told about friend list changes while the player is loaded
+    private volatile FriendListObserver friendListObserver;
+
     public SocialPlayer(UUID playerId, String playerName) {
         this.playerId = playerId;
         this.playerName = playerName;
+        this.friends = new UuidSet();
+        this.bestFriends = new UuidSet();
+        this.outgoingRequests = new UuidSet();
+        this.incomingRequests = new UuidSet();
+    }
+
+    private SocialPlayer(Builder builder) {
+        this.playerId = builder.playerId;
+        this.playerName = builder.playerName;
+        this.friends = UuidSet.of(builder.friends);
+        this.bestFriends = UuidSet.of(builder.bestFriends);
+        this.outgoingRequests = UuidSet.of(builder.outgoingRequests);
+        this.incomingRequests = UuidSet.of(builder.incomingRequests);
+        this.notificationsEnabled = builder.notificationsEnabled;
+    }
+
+    /**
+     * Starts building a player from stored data.
+     */
+    public static Builder builder(UUID playerId, String playerName) {
+        return new Builder(playerId, playerName);
     }
 
     // --- Getters ---
@@ -66,6 +117,71 @@ public class SocialPlayer {
         return Collections.unmodifiableSet(incomingRequests);
     }
 
+    /**
+     * Gets this player's friends that are also in another set, e.g. the online players.
+     * Intersects the two bitmaps instead of looking each friend up.
+     */
+    public Set<UUID> getFriendsIn(UuidSet others) {
+        return Collections.unmodifiableSet(friends.intersection(others));
+    }
+
+    // --- Name Views ---
+
+    /**
+     * Gets the sorted names of this player's friends, if they were built since the friend list
+     * last gained or lost a player and from the current names.
+     *
+     * @param namesVersion The current version of the names the view is built from.
+     * @return The view, or null if it has to be rebuilt.
+     */
+    public SortedNameView getFriendNames(int namesVersion) {
+        CachedView cached = friendNames;
+        return cached != null ? cached.get(friendsVersion.get(), namesVersion) : null;
+    }
+
+    /**
+     * Gets a number that changes whenever a player is added to or removed from the friend list.
+     * Read it before reading the friends a view is built from.
+     */
+    public int getFriendsVersion() {
+        return friendsVersion.get();
+    }
+
+    /**
+     * Stores the friend names built from the friend list and names at the given versions.
+     * A view built from a list or names that changed meanwhile is never returned.
+     */
+    public void setFriendNames(SortedNameView view, int version, int namesVersion) {
+        this.friendNames = new CachedView(view, version, namesVersion);
+    }
+
+    /**
+     * Gets the sorted names of the players who sent this player a request,
+     * if they were built since the incoming requests last changed and from the current names.
+     *
+     * @param namesVersion The current version of the names the view is built from.
+     * @return The view, or null if it has to be rebuilt.
+     */
+    public SortedNameView getIncomingRequestNames(int namesVersion) {
+        CachedView cached = incomingRequestNames;
+        return cached != null ? cached.get(incomingRequestsVersion.get(), namesVersion) : null;
+    }
+
+    public int getIncomingRequestsVersion() {
+        return incomingRequestsVersion.get();
+    }
+
+    public void setIncomingRequestNames(SortedNameView view, int version, int namesVersion) {
+        this.incomingRequestNames = new CachedView(view, version, namesVersion);
+    }
+
+    /**
+     * Sets who is told when a friend is added or removed, or null to stop telling anyone.
+     */
+    public void setFriendListObserver(FriendListObserver observer) {
+        this.friendListObserver = observer;
+    }
+
     // --- Settings ---
 
     public boolean isNotificationsEnabled() {
@@ -74,6 +190,229 @@ public class SocialPlayer {
 
     public void setNotificationsEnabled(boolean enabled) {
         this.notificationsEnabled = enabled;
+        settingsChanged.set(true);
+        markDirty();
+    }
+
+    // --- Persistence State ---
+
+    /**
+     * Checks if this player has changes that have not been persisted yet.
+     */
+    public boolean isDirty() {
+        return dirty.get();
+    }
+
+    /**
+     * Flags this player as having unsaved changes.
+     */
+    public void markDirty() {
+        dirty.set(true);
+    }
+
+    /**
+     * Clears the dirty flag.
+     * Called by storage right before persisting, so any mutation that happens
+     * while the save is running flags the player again.
+     *
+     * @return true if the player was dirty.
+     */
+    public boolean markClean() {
+        return dirty.getAndSet(false);
+    }
+
+    /**
+     * Takes a snapshot of the changes made since the last drain and resets the tracking.
+     * Changes made concurrently with the drain are either part of the snapshot
+     * or kept for the next one, never lost.
+     */
+    public PendingChanges drainChanges() {
+        boolean settings = settingsChanged.getAndSet(false);
+
+        Map<UUID, Boolean> upsertedFriends = new HashMap<>();
+        Set<UUID> removedFriends = new HashSet<>();
+        for (Iterator<UUID> iterator = changedFriends.iterator(); iterator.hasNext();) {
+            UUID friendId = iterator.next();
+            iterator.remove();
+            if (friends.contains(friendId)) {
+                upsertedFriends.put(friendId, bestFriends.contains(friendId));
+            } else {
+                removedFriends.add(friendId);
+            }
+        }
+
+        Set<UUID> addedRequests = new HashSet<>();
+        Set<UUID> removedRequests = new HashSet<>();
+        for (Iterator<UUID> iterator = changedRequests.iterator(); iterator.hasNext();) {
+            UUID targetId = iterator.next();
+            iterator.remove();
+            if (outgoingRequests.contains(targetId)) {
+                addedRequests.add(targetId);
+            } else {
+                removedRequests.add(targetId);
+            }
+        }
+
+        Set<UUID> addedIncomingRequests = new HashSet<>();
+        Set<UUID> removedIncomingRequests = new HashSet<>();
+        for (Iterator<UUID> iterator = changedIncomingRequests.iterator(); iterator.hasNext();) {
+            UUID senderId = iterator.next();
+            iterator.remove();
+            if (incomingRequests.contains(senderId)) {
+                addedIncomingRequests.add(senderId);
+            } else {
+                removedIncomingRequests.add(senderId);
+            }
+        }
+
+        return new PendingChanges(settings, upsertedFriends, removedFriends, addedRequests, removedRequests,
+                addedIncomingRequests, removedIncomingRequests);
+    }
+
+    /**
+     * Puts back changes that could not be persisted, so the next save retries them.
+     */
+    public void restoreChanges(PendingChanges changes) {
+        if (changes.isSettingsChanged()) {
+            settingsChanged.set(true);
+        }
+        changedFriends.addAll(changes.getUpsertedFriends().keySet());
+        changedFriends.addAll(changes.getRemovedFriends());
+        changedRequests.addAll(changes.getAddedRequests());
+        changedRequests.addAll(changes.getRemovedRequests());
+        changedIncomingRequests.addAll(changes.getAddedIncomingRequests());
+        changedIncomingRequests.addAll(changes.getRemovedIncomingRequests());
+        markDirty();
+    }
+
+    /**
+     * Discards all tracked changes, e.g. right after the player was loaded from storage.
+     */
+    public void resetChanges() {
+        changedFriends.clear();
+        changedRequests.clear();
+        changedIncomingRequests.clear();
+        settingsChanged.set(false);
+        fullSyncRequired.set(false);
+        dirty.set(false);
+    }
+
+    /**
+     * Requests that the next save rewrites the whole profile instead of applying
+     * tracked changes. Used to reconcile storage after a failed or unknown state.
+     */
+    public void requireFullSync() {
+        fullSyncRequired.set(true);
+        markDirty();
+    }
+
+    /**
+     * Checks and clears the full-sync request.
+     *
+     * @return true if a full rewrite was requested.
+     */
+    public boolean consumeFullSync() {
+        return fullSyncRequired.getAndSet(false);
+    }
+
+    /**
+     * Drops the tracked changes for the relationship with one player, because
+     * storage persisted it directly for both sides. The player is clean again
+     * if nothing else is waiting to be saved.
+     */
+    public void markSynced(UUID otherId) {
+        changedFriends.remove(otherId);
+        changedRequests.remove(otherId);
+        changedIncomingRequests.remove(otherId);
+        if (!hasTrackedChanges()) {
+            dirty.set(false);
+            // A change tracked meanwhile may have been flagged before the clear, flag it again
+            if (hasTrackedChanges()) {
+                markDirty();
+            }
+        }
+    }
+
+    /**
+     * Captures where this player stands with another player, so a change to it can be undone.
+     */
+    public Relationship getRelationship(UUID otherId) {
+        return new Relationship(otherId, friends.contains(otherId), bestFriends.contains(otherId),
+                outgoingRequests.contains(otherId), incomingRequests.contains(otherId));
+    }
+
+    /**
+     * Puts the relationship with another player back as it was captured, e.g. because storage
+     * failed to persist a change to it. The relationship is tracked as changed again, so a change
+     * that was waiting to be saved before it was dropped by {@link #markSynced} is not lost.
+     */
+    public void restoreRelationship(Relationship relationship) {
+        UUID otherId = relationship.otherId();
+        if (relationship.friend() && friends.add(otherId)) {
+            friendAdded(otherId);
+        } else if (!relationship.friend() && friends.remove(otherId)) {
+            friendRemoved(otherId);
+        }
+        if (relationship.bestFriend()) {
+            bestFriends.add(otherId);
+        } else {
+            bestFriends.remove(otherId);
+        }
+        friendChanged(otherId);
+
+        if (relationship.outgoingRequest()) {
+            outgoingRequests.add(otherId);
+        } else {
+            outgoingRequests.remove(otherId);
+        }
+        requestChanged(otherId);
+        if (relationship.incomingRequest()) {
+            incomingRequests.add(otherId);
+        } else {
+            incomingRequests.remove(otherId);
+        }
+        incomingRequestChanged(otherId);
+    }
+
+    /**
+     * Checks if there is anything for a save to write: tracked changes or a requested full sync.
+     */
+    public boolean hasTrackedChanges() {
+        return !changedFriends.isEmpty() || !changedRequests.isEmpty() || !changedIncomingRequests.isEmpty()
+                || settingsChanged.get() || fullSyncRequired.get();
+    }
+
+    private void friendChanged(UUID friendId) {
+        changedFriends.add(friendId);
+        markDirty();
+    }
+
+    // Only membership changes drop the name view; the best-friend flag is not part of it
+    private void friendAdded(UUID friendId) {
+        friendsVersion.incrementAndGet();
+        FriendListObserver observer = friendListObserver;
+        if (observer != null) {
+            observer.onFriendAdded(this, friendId);
+        }
+    }
+
+    private void friendRemoved(UUID friendId) {
+        friendsVersion.incrementAndGet();
+        FriendListObserver observer = friendListObserver;
+        if (observer != null) {
+            observer.onFriendRemoved(this, friendId);
+        }
+    }
+
+    private void incomingRequestChanged(UUID senderId) {
+        incomingRequestsVersion.incrementAndGet();
+        changedIncomingRequests.add(senderId);
+        markDirty();
+    }
+
+    private void requestChanged(UUID targetId) {
+        changedRequests.add(targetId);
+        markDirty();
     }
 
     // --- Friend Request Methods ---
@@ -84,6 +423,7 @@ public class SocialPlayer {
      */
     public void sendRequest(UUID targetId) {
         this.outgoingRequests.add(targetId);
+        requestChanged(targetId);
     }
 
     /**
@@ -91,6 +431,7 @@ public class SocialPlayer {
      */
     public void cancelRequest(UUID targetId) {
         this.outgoingRequests.remove(targetId);
+        requestChanged(targetId);
     }
 
     /**
@@ -99,6 +440,7 @@ public class SocialPlayer {
      */
     public void receiveRequest(UUID senderId) {
         this.incomingRequests.add(senderId);
+        incomingRequestChanged(senderId);
     }
 
     /**
@@ -107,7 +449,10 @@ public class SocialPlayer {
      */
     public boolean acceptRequest(UUID senderId) {
         if (this.incomingRequests.remove(senderId)) {
+            incomingRequestChanged(senderId);
             this.friends.add(senderId);
+            friendAdded(senderId);
+            friendChanged(senderId);
             return true;
         }
         return false;
@@ -117,7 +462,11 @@ public class SocialPlayer {
      * Denies a friend request.
      */
     public boolean denyRequest(UUID senderId) {
-        return this.incomingRequests.remove(senderId);
+        if (this.incomingRequests.remove(senderId)) {
+            incomingRequestChanged(senderId);
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -138,17 +487,22 @@ public class SocialPlayer {
 
     public void addFriend(UUID friendId) {
         this.friends.add(friendId);
+        friendAdded(friendId);
+        friendChanged(friendId);
     }
 
     public void removeFriend(UUID friendId) {
         this.friends.remove(friendId);
         // A player can't be a best friend if they are not a friend
         this.bestFriends.remove(friendId);
+        friendRemoved(friendId);
+        friendChanged(friendId);
     }
 
     public boolean addBestFriend(UUID friendId) {
         if (this.friends.contains(friendId)) {
             this.bestFriends.add(friendId);
+            friendChanged(friendId);
             return true;
         }
         return false;
@@ -156,6 +510,7 @@ public class SocialPlayer {
 
     public void removeBestFriend(UUID friendId) {
         this.bestFriends.remove(friendId);
+        friendChanged(friendId);
     }
 
     public boolean isBestFriend(UUID friendId) {
@@ -166,10 +521,12 @@ public class SocialPlayer {
 
     public void ignorePlayer(UUID targetId) {
         this.ignored.add(targetId);
+        markDirty();
     }
 
     public void unignorePlayer(UUID targetId) {
         this.ignored.remove(targetId);
+        markDirty();
     }
 
     public void blockPlayer(UUID targetId) {
@@ -177,15 +534,95 @@ public class SocialPlayer {
         // Blocking a player should probably remove them from friends lists
         removeFriend(targetId);
         // Also remove any pending requests
-        this.incomingRequests.remove(targetId);
+        if (this.incomingRequests.remove(targetId)) {
+            incomingRequestChanged(targetId);
+        }
         this.outgoingRequests.remove(targetId);
+        requestChanged(targetId);
     }
 
     public void unblockPlayer(UUID targetId) {
         this.blocked.remove(targetId);
+        markDirty();
     }
 
     public boolean hasBlocked(UUID targetId) {
         return this.blocked.contains(targetId);
     }
+
+    /**
+     * Receives the changes to a player's friend list, e.g. to keep a reverse index.
+     */
+    public interface FriendListObserver {
+        void onFriendAdded(SocialPlayer owner, UUID friendId);
+
+        void onFriendRemoved(SocialPlayer owner, UUID friendId);
+    }
+
+    /**
+     * Where a player stands with another player, see {@link #getRelationship}.
+     */
+    public record Relationship(UUID otherId, boolean friend, boolean bestFriend,
+            boolean outgoingRequest, boolean incomingRequest) {
+    }
+
+    /**
+     * Collects a stored profile row by row and builds the player with each relationship set built once.
+     * Unlike the mutators, nothing is tracked as a change and no observer is told: the built player
+     * matches storage exactly. Not thread-safe; meant to be filled by a single loader.
+     */
+    public static final class Builder {
+        private final UUID playerId;
+        private final String playerName;
+        private final List<UUID> friends = new ArrayList<>();
+        private final List<UUID> bestFriends = new ArrayList<>();
+        private final List<UUID> outgoingRequests = new ArrayList<>();
+        private final List<UUID> incomingRequests = new ArrayList<>();
+        private boolean notificationsEnabled = true;
+
+        private Builder(UUID playerId, String playerName) {
+            this.playerId = playerId;
+            this.playerName = playerName;
+        }
+
+        public Builder notificationsEnabled(boolean enabled) {
+            this.notificationsEnabled = enabled;
+            return this;
+        }
+
+        public Builder friend(UUID friendId, boolean bestFriend) {
+            friends.add(friendId);
+            if (bestFriend) {
+                bestFriends.add(friendId);
+            }
+            return this;
+        }
+
+        /**
+         * Adds a request this player sent.
+         */
+        public Builder outgoingRequest(UUID receiverId) {
+            outgoingRequests.add(receiverId);
+            return this;
+        }
+
+        /**
+         * Adds a request this player received.
+         */
+        public Builder incomingRequest(UUID senderId) {
+            incomingRequests.add(senderId);
+            return this;
+        }
+
+        public SocialPlayer build() {
+            return new SocialPlayer(this);
+        }
+    }
+
+    private record CachedView(SortedNameView view, int version, int namesVersion) {
+
+        SortedNameView get(int currentVersion, int currentNamesVersion) {
+            return version == currentVersion && namesVersion == currentNamesVersion ? view : null;
+        }
+    }
 }
@@ -0,0 +1,71 @@
+package gc.grivyzom.gZSociety.objects;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An immutable, alphabetically sorted list of player names for tab completion.
+ * Names are compared case-folded, so a prefix query is two binary searches
+ * and the result is a slice of the backing array.
+ */
+public final class SortedNameView {
+
+    private static final SortedNameView EMPTY = new SortedNameView(new String[0], new String[0]);
+
+    // Parallel arrays, sorted by the folded name
+    private final String[] folded;
+    private final List<String> names;
+
+    private SortedNameView(String[] folded, String[] names) {
+        this.folded = folded;
+        this.names = Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    public static SortedNameView of(Collection<String> names) {
+        if (names.isEmpty()) {
+            return EMPTY;
+        }
+        String[] sorted = names.toArray(new String[0]);
+        Arrays.sort(sorted, Comparator.comparing(name -> name.toLowerCase(Locale.ROOT)));
+        String[] folded = new String[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            folded[i] = sorted[i].toLowerCase(Locale.ROOT);
+        }
+        return new SortedNameView(folded, sorted);
+    }
+
+    /**
+     * Gets the names starting with a prefix, ignoring case, in alphabetical order.
+     *
+     * @return An unmodifiable slice of this view.
+     */
+    public List<String> startingWith(String prefix) {
+        String from = prefix.toLowerCase(Locale.ROOT);
+        // Every name with the prefix sorts between the prefix itself and the prefix followed by the highest char
+        String to = from + Character.MAX_VALUE;
+        return names.subList(lowerBound(from), lowerBound(to));
+    }
+
+    public int size() {
+        return folded.length;
+    }
+
+    /**
+     * Finds the first position whose name is not smaller than the key.
+     */
+    private int lowerBound(String key) {
+        int position = Arrays.binarySearch(folded, key);
+        if (position < 0) {
+            return -position - 1;
+        }
+        // Two players may share a folded name, step back to the first one
+        while (position > 0 && folded[position - 1].equals(key)) {
+            position--;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,230 @@
+package gc.grivyzom.gZSociety.objects;
+
+import java.lang.ref.Cleaner;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * A thread-safe set of player UUIDs stored as a compressed bitmap of their {@link PlayerIdDictionary} ids.
+ * A sparse set costs about 2 bytes per UUID, and intersecting two sets (a friend list with the
+ * online players, or two friend lists) works on ids and bitmap words instead of hashing UUIDs.
+ * <p>
+ * Reads are lock-free over the current bitmap. Writes build a new bitmap and publish it,
+ * which suits relationship sets: read on every command and notification, changed a few
+ * times per session. Iterators work on the set as it was when they were created.
+ * Sets filled from storage should be built with {@link #of(Collection)} or {@link #addAll(Collection)},
+ * which build the bitmap once instead of once per UUID.
+ * <p>
+ * A set holds a dictionary reference to each of its ids, and gives them all back when it is
+ * cleared or garbage collected, e.g. once its player is unloaded.
+ */
+public final class UuidSet extends AbstractSet<UUID> {
+
+    private static final PlayerIdDictionary DICTIONARY = PlayerIdDictionary.global();
+    // Gives the ids of unreachable sets back to the dictionary
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Bits bits;
+    // Views (intersections) hold no references and cannot be changed
+    private final boolean owner;
+
+    public UuidSet() {
+        this(IdBitmap.EMPTY, true);
+    }
+
+    private UuidSet(IdBitmap ids, boolean owner) {
+        this.bits = new Bits(ids);
+        this.owner = owner;
+        if (owner) {
+            CLEANER.register(this, bits);
+        }
+    }
+
+    /**
+     * Creates a set holding the given UUIDs, building its bitmap in one go.
+     */
+    public static UuidSet of(Collection<UUID> uuids) {
+        return new UuidSet(IdBitmap.of(acquireNew(uuids, IdBitmap.EMPTY)), true);
+    }
+
+    /**
+     * Acquires the ids of the UUIDs a bitmap does not hold yet, once each.
+     *
+     * @return The new ids, sorted.
+     */
+    private static int[] acquireNew(Collection<? extends UUID> uuids, IdBitmap current) {
+        int[] acquired = DICTIONARY.acquireAll(uuids);
+        Arrays.sort(acquired);
+        int[] added = new int[acquired.length];
+        int[] extra = new int[acquired.length];
+        int addedCount = 0;
+        int extraCount = 0;
+        for (int id : acquired) {
+            if (current.contains(id) || (addedCount > 0 && added[addedCount - 1] == id)) {
+                extra[extraCount++] = id;
+            } else {
+                added[addedCount++] = id;
+            }
+        }
+        if (extraCount > 0) {
+            // Duplicates and UUIDs already in the set keep the single reference they have
+            DICTIONARY.releaseAll(Arrays.copyOf(extra, extraCount));
+        }
+        return Arrays.copyOf(added, addedCount);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof UUID uuid)) {
+            return false;
+        }
+        // A UUID without an id is in no set
+        int id = DICTIONARY.find(uuid);
+        return id >= 0 && bits.ids.contains(id);
+    }
+
+    @Override
+    public int size() {
+        return bits.ids.cardinality();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bits.ids.cardinality() == 0;
+    }
+
+    @Override
+    public synchronized boolean add(UUID uuid) {
+        checkOwner();
+        IdBitmap current = bits.ids;
+        int id = DICTIONARY.find(uuid);
+        if (id >= 0 && current.contains(id)) {
+            return false;
+        }
+        bits.ids = current.add(DICTIONARY.acquire(uuid));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        checkOwner();
+        if (!(o instanceof UUID uuid)) {
+            return false;
+        }
+        int id = DICTIONARY.find(uuid);
+        IdBitmap current = bits.ids;
+        if (id < 0 || !current.contains(id)) {
+            return false;
+        }
+        bits.ids = current.remove(id);
+        DICTIONARY.release(id);
+        return true;
+    }
+
+    /**
+     * Adds many UUIDs with a single rebuild of the bitmap.
+     */
+    @Override
+    public synchronized boolean addAll(Collection<? extends UUID> uuids) {
+        checkOwner();
+        if (uuids.isEmpty()) {
+            return false;
+        }
+        IdBitmap current = bits.ids;
+        int[] added = acquireNew(uuids, current);
+        if (added.length == 0) {
+            return false;
+        }
+        int[] merged = Arrays.copyOf(current.toArray(), current.cardinality() + added.length);
+        System.arraycopy(added, 0, merged, current.cardinality(), added.length);
+        bits.ids = IdBitmap.of(merged);
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        checkOwner();
+        bits.run();
+    }
+
+    /**
+     * Gets the UUIDs this set has in common with another, as a new read-only set.
+     * Meant to be used right away, not kept: it does not keep its UUIDs in the dictionary.
+     */
+    public UuidSet intersection(UuidSet other) {
+        return new UuidSet(bits.ids.and(other.bits.ids), false);
+    }
+
+    /**
+     * Counts the UUIDs this set has in common with another, without building the intersection.
+     */
+    public int intersectionSize(UuidSet other) {
+        return bits.ids.andCardinality(other.bits.ids);
+    }
+
+    private void checkOwner() {
+        if (!owner) {
+            throw new UnsupportedOperationException("Intersections are read-only");
+        }
+    }
+
+    @Override
+    public Iterator<UUID> iterator() {
+        int[] snapshot = bits.ids.toArray();
+        return new Iterator<>() {
+            private int next;
+            private UUID last;
+
+            @Override
+            public boolean hasNext() {
+                return next < snapshot.length;
+            }
+
+            @Override
+            public UUID next() {
+                if (next >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                last = DICTIONARY.get(snapshot[next++]);
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                UuidSet.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * The bitmap of a set, kept apart from the set so it can be released once the set is unreachable.
+     */
+    private static final class Bits implements Runnable {
+
+        private volatile IdBitmap ids;
+
+        private Bits(IdBitmap ids) {
+            this.ids = ids;
+        }
+
+        /**
+         * Empties the bitmap and gives its ids back to the dictionary.
+         */
+        @Override
+        public void run() {
+            IdBitmap released = ids;
+            ids = IdBitmap.EMPTY;
+            if (released.cardinality() > 0) {
+                DICTIONARY.releaseAll(released.toArray());
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package gc.grivyzom.gZSociety.storage;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+/**
+ * Converts the plugin tables from VARCHAR(36) to BINARY(16) UUIDs without downtime.
+ * <p>
+ * The conversion follows the usual online schema change approach:
+ * <ol>
+ * <li>Create staging tables ({@code *_compact}) with the new column types.</li>
+ * <li>Install triggers on the live tables that mirror every write into the staging tables.</li>
+ * <li>Backfill the existing rows in small keyset chunks, so no long locks are held.</li>
+ * <li>Swap the tables with a single atomic {@code RENAME TABLE} and drop the triggers.</li>
+ * <li>Add the foreign keys to the new tables without re-validating them.</li>
+ * </ol>
+ * The old tables are kept with a {@code _legacy} suffix so they can be inspected or dropped by hand.
+ * Note that MySQL does not fire triggers for cascaded foreign key deletes; the plugin never deletes
+ * players, so this does not affect its own writes.
+ */
+final class CompactUuidMigration {
+
+    private static final String STAGING_SUFFIX = "_compact";
+    private static final String LEGACY_SUFFIX = "_legacy";
+    private static final long CHUNK_PAUSE_MILLIS = 25;
+
+    private static final List<Table> TABLES = List.of(
+            new Table("gzs_players", List.of("uuid"), List.of("username", "notifications_enabled", "last_seen"),
+                    "uuid"),
+            new Table("gzs_friends", List.of("player_uuid", "friend_uuid"), List.of("is_best_friend"),
+                    "player_uuid"),
+            new Table("gzs_friend_requests", List.of("sender_uuid", "receiver_uuid"), List.of("created_at"),
+                    "sender_uuid"));
+
+    private final DataSource dataSource;
+    private final int chunkSize;
+    private final Consumer<String> progress;
+
+    CompactUuidMigration(DataSource dataSource, int chunkSize, Consumer<String> progress) {
+        this.dataSource = dataSource;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.progress = progress;
+    }
+
+    /**
+     * Runs the whole migration.
+     *
+     * @param cutOverLock Held across the table swap and {@code onCutOver}, so no statement of the caller
+     *                    runs against the new tables with text UUIDs.
+     * @param onCutOver   Called right after the tables were swapped, so the caller starts binding binary UUIDs.
+     */
+    void run(Lock cutOverLock, Runnable onCutOver) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            // Start from scratch if an earlier run was aborted
+            dropTriggers(stmt);
+            for (Table table : TABLES) {
+                stmt.execute("DROP TABLE IF EXISTS " + table.name + STAGING_SUFFIX);
+            }
+            SQLStorage.createTables(stmt, STAGING_SUFFIX, SQLStorage.COMPACT_UUID_TYPE, false);
+            // Bring the staging tables to the same schema version (indexes) as the live ones
+            SchemaMigrator.applyAll(stmt, STAGING_SUFFIX);
+            createTriggers(stmt);
+            progress.accept("Staging tables and sync triggers created, copying rows...");
+
+            // Players first, so every relationship row has both sides available after the swap.
+            // INSERT IGNORE keeps any newer row the triggers already wrote.
+            for (Table table : TABLES) {
+                long copied = backfill(conn, table);
+                progress.accept("Copied " + copied + " rows of " + table.name + ".");
+            }
+
+            StringBuilder rename = new StringBuilder("RENAME TABLE ");
+            for (Table table : TABLES) {
+                rename.append(table.name).append(" TO ").append(table.name).append(LEGACY_SUFFIX).append(", ")
+                        .append(table.name).append(STAGING_SUFFIX).append(" TO ").append(table.name).append(", ");
+            }
+            cutOverLock.lock();
+            try {
+                stmt.execute(rename.substring(0, rename.length() - 2));
+                onCutOver.run();
+            } finally {
+                cutOverLock.unlock();
+            }
+            dropTriggers(stmt);
+            progress.accept("Switched to the new tables.");
+
+            // Rows were already consistent in the old tables, skip re-validating them
+            stmt.execute("SET SESSION foreign_key_checks = 0");
+            try {
+                stmt.execute("ALTER TABLE gzs_friends "
+                        + "ADD FOREIGN KEY (player_uuid) REFERENCES gzs_players(uuid) ON DELETE CASCADE, "
+                        + "ADD FOREIGN KEY (friend_uuid) REFERENCES gzs_players(uuid) ON DELETE CASCADE");
+                stmt.execute("ALTER TABLE gzs_friend_requests "
+                        + "ADD FOREIGN KEY (sender_uuid) REFERENCES gzs_players(uuid) ON DELETE CASCADE, "
+                        + "ADD FOREIGN KEY (receiver_uuid) REFERENCES gzs_players(uuid) ON DELETE CASCADE");
+            } finally {
+                stmt.execute("SET SESSION foreign_key_checks = 1");
+            }
+            progress.accept("Migration complete. Old tables were kept with the " + LEGACY_SUFFIX + " suffix.");
+        }
+    }
+
+    /**
+     * Copies a table into its staging table in keyset chunks.
+     *
+     * @return The number of rows copied.
+     */
+    private long backfill(Connection conn, Table table) throws SQLException {
+        String boundSql = "SELECT MAX(" + table.chunkColumn + ") FROM (SELECT " + table.chunkColumn + " FROM "
+                + table.name + " WHERE " + table.chunkColumn + " > ? ORDER BY " + table.chunkColumn
+                + " LIMIT ?) chunk";
+        String copySql = "INSERT IGNORE INTO " + table.name + STAGING_SUFFIX + " (" + table.columnList() + ") "
+                + "SELECT " + table.convertedColumnList("") + " FROM " + table.name
+                + " WHERE " + table.chunkColumn + " > ? AND " + table.chunkColumn + " <= ?";
+
+        long copied = 0;
+        String lastKey = "";
+        try (PreparedStatement bound = conn.prepareStatement(boundSql);
+                PreparedStatement copy = conn.prepareStatement(copySql)) {
+            while (true) {
+                bound.setString(1, lastKey);
+                bound.setInt(2, chunkSize);
+                String upperKey;
+                try (ResultSet rs = bound.executeQuery()) {
+                    upperKey = rs.next() ? rs.getString(1) : null;
+                }
+                if (upperKey == null) {
+                    return copied;
+                }
+
+                copy.setString(1, lastKey);
+                copy.setString(2, upperKey);
+                copied += copy.executeUpdate();
+                lastKey = upperKey;
+
+                // Leave room for regular traffic between chunks
+                try {
+                    Thread.sleep(CHUNK_PAUSE_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("UUID migration was interrupted", e);
+                }
+            }
+        }
+    }
+
+    private void createTriggers(Statement stmt) throws SQLException {
+        for (Table table : TABLES) {
+            String replace = "REPLACE INTO " + table.name + STAGING_SUFFIX + " (" + table.columnList() + ") "
+                    + "VALUES (" + table.convertedColumnList("NEW.") + ")";
+            stmt.execute("CREATE TRIGGER " + triggerName(table, "ins") + " AFTER INSERT ON " + table.name
+                    + " FOR EACH ROW " + replace);
+            stmt.execute("CREATE TRIGGER " + triggerName(table, "upd") + " AFTER UPDATE ON " + table.name
+                    + " FOR EACH ROW " + replace);
+
+            List<String> conditions = new ArrayList<>();
+            for (String column : table.uuidColumns) {
+                conditions.add(column + " = " + unhex("OLD." + column));
+            }
+            stmt.execute("CREATE TRIGGER " + triggerName(table, "del") + " AFTER DELETE ON " + table.name
+                    + " FOR EACH ROW DELETE FROM " + table.name + STAGING_SUFFIX
+                    + " WHERE " + String.join(" AND ", conditions));
+        }
+    }
+
+    private void dropTriggers(Statement stmt) throws SQLException {
+        for (Table table : TABLES) {
+            for (String event : new String[] { "ins", "upd", "del" }) {
+                stmt.execute("DROP TRIGGER IF EXISTS " + triggerName(table, event));
+            }
+        }
+    }
+
+    private static String triggerName(Table table, String event) {
+        return table.name + "_uuidmig_" + event;
+    }
+
+    private static String unhex(String column) {
+        return "UNHEX(REPLACE(" + column + ", '-', ''))";
+    }
+
+    /**
+     * Describes one table being converted.
+     *
+     * @param uuidColumns  Columns holding UUIDs, converted to binary.
+     * @param otherColumns Columns copied as they are.
+     * @param chunkColumn  Leading primary key column used to walk the table in chunks.
+     */
+    private record Table(String name, List<String> uuidColumns, List<String> otherColumns, String chunkColumn) {
+
+        String columnList() {
+            List<String> columns = new ArrayList<>(uuidColumns);
+            columns.addAll(otherColumns);
+            return String.join(", ", columns);
+        }
+
+        String convertedColumnList(String prefix) {
+            List<String> columns = new ArrayList<>();
+            for (String column : uuidColumns) {
+                columns.add(unhex(prefix + column));
+            }
+            for (String column : otherColumns) {
+                columns.add(prefix + column);
+            }
+            return String.join(", ", columns);
+        }
+    }
+}
@@ -0,0 +1,917 @@
+package gc.grivyzom.gZSociety.storage;
+
+import gc.grivyzom.gZSociety.objects.PendingChanges;
+import gc.grivyzom.gZSociety.objects.SocialPlayer;
+import org.slf4j.Logger;
+import org.spongepowered.configurate.ConfigurationNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * An embedded storage implementation that needs no external service.
+ * <p>
+ * Every save appends a full snapshot of the player's profile to an append-only log.
+ * Each record carries a CRC32, so a write torn by a crash is detected and cut off on the next start.
+ * Records written together (a bulk save, or both sides of a relationship) form a batch that
+ * is recovered all or nothing.
+ * A memory-mapped index maps each UUID to their latest record, so a load is a hash lookup and one read.
+ * Incoming friend requests are derived from the senders' records and kept in memory.
+ * <p>
+ * Superseded records are garbage; once they make up enough of the log, a background
+ * compaction copies the live records into a fresh log and swaps it in atomically.
+ */
+public class FileStorage implements Storage {
+
+    private static final int LOG_MAGIC = 0x475A534C; // "GZSL"
+    private static final int LOG_FORMAT_VERSION = 1;
+    private static final int LOG_HEADER_SIZE = 8;
+    // Payload length + CRC32 of the payload
+    private static final int RECORD_HEADER_SIZE = 8;
+    // Set in the length of every record of a batch but the last, so a torn batch is discarded as a whole
+    private static final int BATCH_CONTINUED = 0x80000000;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final long COMPACTION_CHECK_SECONDS = 60;
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final Path logPath;
+    private final Path indexPath;
+    private final Path compactPath;
+    private final Executor executor;
+    private final Logger logger;
+    private final boolean syncWrites;
+    private final double compactionRatio;
+    private final long compactionMinBytes;
+
+    // Appends and the compaction swap take the write lock; loads only read
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService compactor;
+
+    private FileChannel log;
+    private long logEnd;
+    private long liveBytes;
+    private MappedUuidIndex index;
+    // Receiver -> senders, derived from the outgoing requests in each record
+    private final Map<UUID, Set<UUID>> incomingRequests = new HashMap<>();
+    // Lower-cased name -> UUID, from the latest records
+    private final Map<String, UUID> playersByName = new HashMap<>();
+
+    // Metrics
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final AtomicLong loadMaxNanos = new AtomicLong();
+    private final LongAdder compactions = new LongAdder();
+
+    public FileStorage(ConfigurationNode fileConfig, Path dataDirectory, Executor executor, Logger logger) {
+        Path directory = dataDirectory.resolve(fileConfig.node("directory").getString("data"));
+        this.logPath = directory.resolve("profiles.log");
+        this.indexPath = directory.resolve("profiles.idx");
+        this.compactPath = directory.resolve("profiles.log.compact");
+        this.executor = executor;
+        this.logger = logger;
+        this.syncWrites = fileConfig.node("sync-writes").getBoolean(true);
+        this.compactionRatio = fileConfig.node("compaction-ratio").getDouble(0.5);
+        this.compactionMinBytes = fileConfig.node("compaction-min-size-kb").getLong(1024) * 1024;
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GZ-Society Compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the log and index, recovering from an unclean shutdown if needed,
+     * and starts the background compaction.
+     */
+    public void open() throws IOException {
+        Files.createDirectories(logPath.getParent());
+        // Left over from a compaction that did not finish, the live log is still complete
+        Files.deleteIfExists(compactPath);
+
+        this.log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (log.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE).putInt(LOG_MAGIC).putInt(LOG_FORMAT_VERSION);
+            writeFully(log, header.flip(), 0);
+            log.force(true);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+            if (log.size() < LOG_HEADER_SIZE || !readFully(log, header, 0)
+                    || header.getInt(0) != LOG_MAGIC || header.getInt(4) != LOG_FORMAT_VERSION) {
+                log.close();
+                throw new IOException(logPath + " is not a GZ-Society profile log");
+            }
+        }
+
+        this.index = new MappedUuidIndex(indexPath);
+        long recoverFrom = LOG_HEADER_SIZE;
+        if (index.isTrusted() && index.getCoveredLength() >= LOG_HEADER_SIZE
+                && index.getCoveredLength() <= log.size()) {
+            recoverFrom = index.getCoveredLength();
+        } else {
+            if (log.size() > LOG_HEADER_SIZE) {
+                logger.info("Rebuilding the profile index from {}...", logPath.getFileName());
+            }
+            index.clear();
+        }
+        recover(recoverFrom);
+
+        // Derive incoming requests, names and the live size from the latest records
+        index.forEach((playerId, offset) -> {
+            byte[] payload = readIndexedRecord(log, offset);
+            liveBytes += RECORD_HEADER_SIZE + payload.length;
+            ProfileRecord record = decode(payload);
+            for (UUID targetId : record.outgoingRequests()) {
+                incomingRequests.computeIfAbsent(targetId, k -> new HashSet<>()).add(playerId);
+            }
+            if (!record.name().isEmpty()) {
+                playersByName.put(record.name().toLowerCase(Locale.ROOT), playerId);
+            }
+        });
+        logger.info("Profile log opened: {} profiles, {} KB.", index.size(), logEnd / 1024);
+
+        compactor.scheduleWithFixedDelay(this::compactIfNeeded, COMPACTION_CHECK_SECONDS,
+                COMPACTION_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Replays the records after the indexed part of the log, stopping at the first damaged one.
+     * Anything after the last complete batch was never acknowledged, so it is cut off.
+     */
+    private void recover(long from) throws IOException {
+        long position = from;
+        long batchStart = from;
+        long size = log.size();
+        Map<UUID, Long> batch = new LinkedHashMap<>();
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        while (position < size) {
+            byte[] payload = readRecord(log, position);
+            if (payload == null) {
+                break;
+            }
+            lengthBuffer.clear();
+            readFully(log, lengthBuffer, position);
+            batch.put(readPlayerId(payload), position);
+            position += RECORD_HEADER_SIZE + payload.length;
+
+            if ((lengthBuffer.getInt(0) & BATCH_CONTINUED) == 0) {
+                for (Map.Entry<UUID, Long> entry : batch.entrySet()) {
+                    index.put(entry.getKey(), entry.getValue());
+                }
+                batch.clear();
+                batchStart = position;
+            }
+        }
+
+        if (batchStart < size) {
+            logger.warn("Discarding {} bytes of incomplete data at the end of {}.", size - batchStart,
+                    logPath.getFileName());
+            log.truncate(batchStart);
+            log.force(true);
+        }
+        this.logEnd = batchStart;
+        index.setCoveredLength(logEnd);
+    }
+
+    @Override
+    public CompletableFuture<SocialPlayer> loadPlayer(UUID playerId, String playerName) {
+        return loadPlayers(Map.of(playerId, playerName)).thenApply(loaded -> loaded.get(playerId));
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, SocialPlayer>> loadPlayers(Map<UUID, String> players) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            Map<UUID, SocialPlayer> loaded = new HashMap<>(players.size() * 2);
+            Map<UUID, String> needRecord = new HashMap<>();
+
+            lock.readLock().lock();
+            try {
+                for (Map.Entry<UUID, String> entry : players.entrySet()) {
+                    UUID playerId = entry.getKey();
+                    SocialPlayer.Builder builder = SocialPlayer.builder(playerId, entry.getValue());
+
+                    long offset = index.get(playerId);
+                    ProfileRecord record = offset < 0 ? null : decode(readIndexedRecord(log, offset));
+                    if (record != null) {
+                        builder.notificationsEnabled(record.notificationsEnabled());
+                        record.friends().forEach(builder::friend);
+                        record.outgoingRequests().forEach(builder::outgoingRequest);
+                    }
+                    incomingRequests.getOrDefault(playerId, Set.of()).forEach(builder::incomingRequest);
+
+                    // TODO: Load ignored and blocked players
+                    loaded.put(playerId, builder.build());
+
+                    // New players and name changes are recorded, like the SQL upsert does
+                    if (record == null || !record.name().equals(entry.getValue())) {
+                        needRecord.put(playerId, entry.getValue());
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Failed to load data for {} players", players.size(), e);
+                throw new RuntimeException("Failed to load data for " + players.size() + " players", e);
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            if (!needRecord.isEmpty()) {
+                try {
+                    recordNames(needRecord);
+                } catch (IOException e) {
+                    // The profiles are still usable, their record is written on the next save
+                    logger.warn("Failed to record the names of {} players", needRecord.size(), e);
+                }
+            }
+
+            long elapsed = System.nanoTime() - start;
+            loadCount.add(players.size());
+            loadNanos.add(elapsed);
+            loadMaxNanos.accumulateAndGet(elapsed, Math::max);
+            return loaded;
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> savePlayer(SocialPlayer player) {
+        return savePlayers(List.of(player));
+    }
+
+    @Override
+    public CompletableFuture<Void> savePlayers(Collection<SocialPlayer> players) {
+        return CompletableFuture.runAsync(() -> {
+            // Every record is a full snapshot, so tracked changes are covered by writing it,
+            // except incoming requests, which live in the senders' records
+            List<DrainedChanges> drained = new ArrayList<>(players.size());
+            for (SocialPlayer player : players) {
+                player.consumeFullSync();
+                drained.add(new DrainedChanges(player, player.drainChanges()));
+            }
+
+            try {
+                append(drained);
+            } catch (IOException e) {
+                for (DrainedChanges entry : drained) {
+                    entry.player().restoreChanges(entry.changes());
+                }
+                String target = players.size() == 1 ? players.iterator().next().getPlayerName()
+                        : players.size() + " players";
+                logger.error("Failed to save player data for {}", target, e);
+                throw new RuntimeException("Failed to save player data for " + target, e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<UUID> findPlayerId(String playerName) {
+        return CompletableFuture.supplyAsync(() -> {
+            lock.readLock().lock();
+            try {
+                return playersByName.get(playerName.toLowerCase(Locale.ROOT));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, String>> loadNames(Collection<UUID> playerIds) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<UUID, String> names = new HashMap<>(playerIds.size() * 2);
+            lock.readLock().lock();
+            try {
+                for (UUID playerId : playerIds) {
+                    byte[] payload = readLatest(playerId);
+                    // Players only known through someone else's relationship have no name yet
+                    String name = payload == null ? "" : decode(payload).name();
+                    if (!name.isEmpty()) {
+                        names.put(playerId, name);
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Failed to load names of {} players", playerIds.size(), e);
+                throw new RuntimeException("Failed to load names of " + playerIds.size() + " players", e);
+            } finally {
+                lock.readLock().unlock();
+            }
+            return names;
+        }, executor);
+    }
+
+    // --- Relationship operations ---
+
+    @Override
+    public CompletableFuture<Void> createFriendship(UUID playerId, UUID friendId) {
+        return updateRecords("create friendship", playerId, friendId, (player, friend) -> {
+            player.friends().putIfAbsent(friendId, false);
+            friend.friends().putIfAbsent(playerId, false);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteFriendship(UUID playerId, UUID friendId) {
+        return updateRecords("delete friendship", playerId, friendId, (player, friend) -> {
+            player.friends().remove(friendId);
+            friend.friends().remove(playerId);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> createRequest(UUID senderId, UUID receiverId) {
+        // The receiver's side is derived from the sender's record
+        return updateRecords("create friend request", senderId, receiverId, (sender, receiver) -> {
+            if (!sender.outgoingRequests().contains(receiverId)) {
+                sender.outgoingRequests().add(receiverId);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> resolveRequest(UUID senderId, UUID receiverId, boolean accepted) {
+        return updateRecords("resolve friend request", senderId, receiverId, (sender, receiver) -> {
+            sender.outgoingRequests().remove(receiverId);
+            if (accepted) {
+                // A crossed request is settled by the friendship too
+                receiver.outgoingRequests().remove(senderId);
+                sender.friends().putIfAbsent(receiverId, false);
+                receiver.friends().putIfAbsent(senderId, false);
+            }
+        });
+    }
+
+    /**
+     * Changes the latest records of two players and appends the changed ones as a single batch.
+     * Works on the stored records, so it is correct whether or not the players are loaded.
+     *
+     * @param action Describes the change for the error message.
+     */
+    private CompletableFuture<Void> updateRecords(String action, UUID firstId, UUID secondId,
+            BiConsumer<ProfileRecord, ProfileRecord> change) {
+        return CompletableFuture.runAsync(() -> {
+            lock.writeLock().lock();
+            try {
+                byte[] firstPayload = readLatest(firstId);
+                byte[] secondPayload = readLatest(secondId);
+                ProfileRecord first = firstPayload == null ? emptyRecord(firstId) : decode(firstPayload);
+                ProfileRecord second = secondPayload == null ? emptyRecord(secondId) : decode(secondPayload);
+                change.accept(first, second);
+
+                Map<UUID, byte[]> payloads = new LinkedHashMap<>();
+                byte[] updated = encode(first);
+                if (!Arrays.equals(updated, firstPayload)) {
+                    payloads.put(firstId, updated);
+                }
+                updated = encode(second);
+                if (!Arrays.equals(updated, secondPayload)) {
+                    payloads.put(secondId, updated);
+                }
+                if (!payloads.isEmpty()) {
+                    appendBatch(payloads);
+                }
+            } catch (IOException e) {
+                logger.error("Failed to {}", action, e);
+                throw new RuntimeException("Failed to " + action, e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }, executor);
+    }
+
+    /**
+     * Stores the current names of players, creating records for new players.
+     * Applied to the latest records under the lock, so a relationship change
+     * written since they were read is not overwritten.
+     */
+    private void recordNames(Map<UUID, String> names) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Map<UUID, byte[]> payloads = new LinkedHashMap<>();
+            for (Map.Entry<UUID, String> entry : names.entrySet()) {
+                byte[] payload = readLatest(entry.getKey());
+                ProfileRecord record = payload == null ? emptyRecord(entry.getKey()) : decode(payload);
+                if (payload == null || !record.name().equals(entry.getValue())) {
+                    payloads.put(entry.getKey(), encode(new ProfileRecord(record.playerId(), entry.getValue(),
+                            record.notificationsEnabled(), record.friends(), record.outgoingRequests())));
+                }
+            }
+            if (!payloads.isEmpty()) {
+                appendBatch(payloads);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the payload of a player's latest record, or null if they have none. Needs the lock.
+     */
+    private byte[] readLatest(UUID playerId) throws IOException {
+        long offset = index.get(playerId);
+        return offset < 0 ? null : readIndexedRecord(log, offset);
+    }
+
+    /**
+     * Appends a record for each player with a single write, along with the records of the senders
+     * whose requests to them were received or dropped.
+     * The snapshots are taken under the write lock, like {@link #updateRecords} reads and writes,
+     * so a snapshot taken before a relationship change is never appended after that change's record.
+     */
+    private void append(List<DrainedChanges> drained) throws IOException {
+        lock.writeLock().lock();
+        try {
+            // Players saved twice in one call only need their latest state
+            Map<UUID, byte[]> payloads = new LinkedHashMap<>();
+            for (DrainedChanges entry : drained) {
+                payloads.put(entry.player().getPlayerId(), encode(snapshot(entry.player())));
+            }
+
+            Map<UUID, ProfileRecord> senders = new LinkedHashMap<>();
+            for (DrainedChanges entry : drained) {
+                UUID receiverId = entry.player().getPlayerId();
+                updateSenders(senders, payloads, receiverId, entry.changes().getAddedIncomingRequests(), true);
+                updateSenders(senders, payloads, receiverId, entry.changes().getRemovedIncomingRequests(), false);
+            }
+            for (ProfileRecord sender : senders.values()) {
+                payloads.put(sender.playerId(), encode(sender));
+            }
+            appendBatch(payloads);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or removes a receiver in the outgoing requests of the latest records of senders. Needs the write lock.
+     * Senders saved in the same batch are skipped, their own snapshot is written instead.
+     */
+    private void updateSenders(Map<UUID, ProfileRecord> senders, Map<UUID, byte[]> payloads, UUID receiverId,
+            Set<UUID> senderIds, boolean requested) throws IOException {
+        for (UUID senderId : senderIds) {
+            ProfileRecord sender = senders.get(senderId);
+            if (sender == null) {
+                if (payloads.containsKey(senderId)) {
+                    continue;
+                }
+                byte[] payload = readLatest(senderId);
+                if (payload == null && !requested) {
+                    continue;
+                }
+                sender = payload == null ? emptyRecord(senderId) : decode(payload);
+                senders.put(senderId, sender);
+            }
+            sender.outgoingRequests().remove(receiverId);
+            if (requested) {
+                sender.outgoingRequests().add(receiverId);
+            }
+        }
+    }
+
+    /**
+     * Appends records as one batch with a single write, then points the index at them.
+     * The index is only updated once the records are written (and synced, if enabled),
+     * so it never refers to data that could be lost.
+     */
+    private void appendBatch(Map<UUID, byte[]> payloads) throws IOException {
+        int total = 0;
+        for (byte[] payload : payloads.values()) {
+            total += RECORD_HEADER_SIZE + payload.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        CRC32 crc = new CRC32();
+        int remaining = payloads.size();
+        for (byte[] payload : payloads.values()) {
+            crc.reset();
+            crc.update(payload);
+            int length = --remaining > 0 ? payload.length | BATCH_CONTINUED : payload.length;
+            buffer.putInt(length).putInt((int) crc.getValue()).put(payload);
+        }
+        buffer.flip();
+
+        lock.writeLock().lock();
+        try {
+            long position = logEnd;
+            writeFully(log, buffer, position);
+            if (syncWrites) {
+                log.force(false);
+            }
+
+            for (Map.Entry<UUID, byte[]> entry : payloads.entrySet()) {
+                UUID playerId = entry.getKey();
+                byte[] payload = entry.getValue();
+                long previous = index.get(playerId);
+                if (previous >= 0) {
+                    byte[] old = readIndexedRecord(log, previous);
+                    liveBytes -= RECORD_HEADER_SIZE + old.length;
+                    ProfileRecord oldRecord = decode(old);
+                    for (UUID targetId : oldRecord.outgoingRequests()) {
+                        Set<UUID> senders = incomingRequests.get(targetId);
+                        if (senders != null && senders.remove(playerId) && senders.isEmpty()) {
+                            incomingRequests.remove(targetId);
+                        }
+                    }
+                    playersByName.remove(oldRecord.name().toLowerCase(Locale.ROOT), playerId);
+                }
+                ProfileRecord record = decode(payload);
+                for (UUID targetId : record.outgoingRequests()) {
+                    incomingRequests.computeIfAbsent(targetId, k -> new HashSet<>()).add(playerId);
+                }
+                if (!record.name().isEmpty()) {
+                    playersByName.put(record.name().toLowerCase(Locale.ROOT), playerId);
+                }
+
+                index.put(playerId, position);
+                liveBytes += RECORD_HEADER_SIZE + payload.length;
+                position += RECORD_HEADER_SIZE + payload.length;
+            }
+            this.logEnd = position;
+            index.setCoveredLength(logEnd);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Compaction ---
+
+    private void compactIfNeeded() {
+        long garbage;
+        long size;
+        lock.readLock().lock();
+        try {
+            size = logEnd - LOG_HEADER_SIZE;
+            garbage = size - liveBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (logEnd >= compactionMinBytes && garbage > size * compactionRatio) {
+            try {
+                compact();
+            } catch (IOException e) {
+                logger.error("Failed to compact the profile log, will retry later.", e);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the log with only the latest record of each player.
+     * The live records are copied without holding the lock, so saves keep going;
+     * only the records appended meanwhile are copied while the lock is held for the swap.
+     */
+    private void compact() throws IOException {
+        long started = System.nanoTime();
+        Map<UUID, Long> snapshot = new HashMap<>();
+        long snapshotEnd;
+        lock.readLock().lock();
+        try {
+            index.forEach(snapshot::put);
+            snapshotEnd = logEnd;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        FileChannel compacted = FileChannel.open(compactPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE).putInt(LOG_MAGIC).putInt(LOG_FORMAT_VERSION);
+            writeFully(compacted, header.flip(), 0);
+            long position = LOG_HEADER_SIZE;
+
+            Map<UUID, Long> offsets = new HashMap<>(snapshot.size() * 2);
+            // Size of each player's latest record in the new log, to count the live bytes from
+            Map<UUID, Integer> recordSizes = new HashMap<>(snapshot.size() * 2);
+            for (Map.Entry<UUID, Long> entry : snapshot.entrySet()) {
+                // Each live record stands alone in the new log, outside of its original batch
+                byte[] payload = readIndexedRecord(log, entry.getValue());
+                ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+                readFully(log, recordHeader, entry.getValue());
+                recordHeader.putInt(0, payload.length).rewind();
+                writeFully(compacted, recordHeader, position);
+                writeFully(compacted, ByteBuffer.wrap(payload), position + RECORD_HEADER_SIZE);
+                offsets.put(entry.getKey(), position);
+                recordSizes.put(entry.getKey(), RECORD_HEADER_SIZE + payload.length);
+                position += RECORD_HEADER_SIZE + payload.length;
+            }
+
+            lock.writeLock().lock();
+            try {
+                // Records appended since the snapshot are newer, copy them (and their batches) as they are
+                long tailStart = position;
+                copy(log, snapshotEnd, logEnd - snapshotEnd, compacted, position);
+                position += logEnd - snapshotEnd;
+                for (long offset = tailStart; offset < position;) {
+                    byte[] payload = readIndexedRecord(compacted, offset);
+                    offsets.put(readPlayerId(payload), offset);
+                    recordSizes.put(readPlayerId(payload), RECORD_HEADER_SIZE + payload.length);
+                    offset += RECORD_HEADER_SIZE + payload.length;
+                }
+                compacted.force(true);
+
+                // The open channel keeps pointing at the file after the rename
+                Files.move(compactPath, logPath, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                FileChannel old = log;
+                this.log = compacted;
+                old.close();
+
+                long before = logEnd;
+                index.clear();
+                for (Map.Entry<UUID, Long> entry : offsets.entrySet()) {
+                    index.put(entry.getKey(), entry.getValue());
+                }
+                // Counted again from the new log, so the garbage ratio starts over from what is really there
+                long live = 0;
+                for (int recordSize : recordSizes.values()) {
+                    live += recordSize;
+                }
+                this.liveBytes = live;
+                this.logEnd = position;
+                index.setCoveredLength(logEnd);
+                compactions.increment();
+                logger.info("Compacted the profile log from {} KB to {} KB in {} ms.", before / 1024, logEnd / 1024,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (compacted != log) {
+                compacted.close();
+                Files.deleteIfExists(compactPath);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        close(CLOSE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Closes the log, waiting at most the given time for a running compaction.
+     * A compaction still running then fails on the closed log and is retried on the next start;
+     * the log it was copying stays complete.
+     */
+    @Override
+    public void close(long timeoutMillis) {
+        compactor.shutdown();
+        try {
+            if (!compactor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.warn("Compaction did not finish within {} ms, closing the profile log anyway.",
+                        timeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (log != null) {
+                log.force(true);
+                log.close();
+            }
+            if (index != null) {
+                index.close();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to close the profile log", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Record encoding ---
+
+    /**
+     * Record payload: UUID, name, notification setting, friends with their best-friend flag
+     * and outgoing friend requests. Incoming requests are not stored, they are the other side's outgoing ones.
+     */
+    private static byte[] encode(ProfileRecord record) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeUuid(out, record.playerId());
+            out.writeUTF(record.name());
+            out.writeBoolean(record.notificationsEnabled());
+
+            out.writeInt(record.friends().size());
+            for (Map.Entry<UUID, Boolean> friend : record.friends().entrySet()) {
+                writeUuid(out, friend.getKey());
+                out.writeBoolean(friend.getValue());
+            }
+
+            out.writeInt(record.outgoingRequests().size());
+            for (UUID targetId : record.outgoingRequests()) {
+                writeUuid(out, targetId);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Cannot happen when writing to memory
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies the persisted state of a player. The sets may change while copying;
+     * such changes are tracked and written by the next save.
+     */
+    private static ProfileRecord snapshot(SocialPlayer player) {
+        Map<UUID, Boolean> friends = new LinkedHashMap<>();
+        for (UUID friendId : player.getFriends()) {
+            friends.put(friendId, player.isBestFriend(friendId));
+        }
+        return new ProfileRecord(player.getPlayerId(), player.getPlayerName(), player.isNotificationsEnabled(),
+                friends, new ArrayList<>(player.getOutgoingRequests()));
+    }
+
+    /**
+     * A record for a player that was never stored. The name is filled in when they join.
+     */
+    private static ProfileRecord emptyRecord(UUID playerId) {
+        return new ProfileRecord(playerId, "", true, new LinkedHashMap<>(), new ArrayList<>());
+    }
+
+    private static ProfileRecord decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        UUID playerId = readUuid(in);
+        String name = in.readUTF();
+        boolean notifications = in.readBoolean();
+
+        int friendCount = in.readInt();
+        Map<UUID, Boolean> friends = new LinkedHashMap<>(friendCount * 2);
+        for (int i = 0; i < friendCount; i++) {
+            friends.put(readUuid(in), in.readBoolean());
+        }
+
+        int requestCount = in.readInt();
+        List<UUID> outgoing = new ArrayList<>(requestCount);
+        for (int i = 0; i < requestCount; i++) {
+            outgoing.add(readUuid(in));
+        }
+        return new ProfileRecord(playerId, name, notifications, friends, outgoing);
+    }
+
+    private static UUID readPlayerId(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        return new UUID(buffer.getLong(0), buffer.getLong(8));
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    // --- File helpers ---
+
+    /**
+     * Reads and verifies the record at an offset.
+     *
+     * @return The payload, or null if the record is incomplete or its checksum does not match.
+     */
+    private static byte[] readRecord(FileChannel channel, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        if (!readFully(channel, header, offset)) {
+            return null;
+        }
+        int length = header.getInt(0) & ~BATCH_CONTINUED;
+        if (length < 16 || length > MAX_RECORD_SIZE) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        if (!readFully(channel, ByteBuffer.wrap(payload), offset + RECORD_HEADER_SIZE)) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == header.getInt(4) ? payload : null;
+    }
+
+    /**
+     * Reads a record the index points at, which must be intact.
+     */
+    private static byte[] readIndexedRecord(FileChannel channel, long offset) throws IOException {
+        byte[] payload = readRecord(channel, offset);
+        if (payload == null) {
+            throw new IOException("Damaged profile record at offset " + offset);
+        }
+        return payload;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static void copy(FileChannel from, long offset, long length, FileChannel to, long position)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_SIZE, Math.max(length, 1)));
+        long copied = 0;
+        while (copied < length) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), length - copied));
+            if (!readFully(from, buffer, offset + copied)) {
+                throw new EOFException("Profile log ended while copying");
+            }
+            buffer.flip();
+            writeFully(to, buffer, position + copied);
+            copied += buffer.limit();
+        }
+    }
+
+    // --- Metrics ---
+
+    public int getProfileCount() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getLogSize() {
+        return logEnd;
+    }
+
+    /**
+     * Share of the log taken by the latest records, between 0 and 1.
+     */
+    public double getLiveRatio() {
+        long size = logEnd - LOG_HEADER_SIZE;
+        return size <= 0 ? 1 : (double) liveBytes / size;
+    }
+
+    public long getCompactionCount() {
+        return compactions.sum();
+    }
+
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    public double getAverageLoadMillis() {
+        long count = loadCount.sum();
+        return count == 0 ? 0 : loadNanos.sum() / (double) count / 1_000_000.0;
+    }
+
+    public double getMaxLoadMillis() {
+        return loadMaxNanos.get() / 1_000_000.0;
+    }
+
+    private record ProfileRecord(UUID playerId, String name, boolean notificationsEnabled,
+            Map<UUID, Boolean> friends, List<UUID> outgoingRequests) {
+    }
+
+    private record DrainedChanges(SocialPlayer player, PendingChanges changes) {
+    }
+}
@@ -2,10 +2,15 @@ package gc.grivyzom.gZSociety.storage;
 
 import gc.grivyzom.gZSociety.objects.SocialPlayer;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * An in-memory storage implementation for testing and basic use.
@@ -14,13 +19,28 @@ import java.util.concurrent.ConcurrentMap;
 public class InMemoryStorage implements Storage {
 
     private final ConcurrentMap<UUID, SocialPlayer> database = new ConcurrentHashMap<>();
+    private final Executor executor;
+
+    public InMemoryStorage(Executor executor) {
+        this.executor = executor;
+    }
 
     @Override
     public CompletableFuture<SocialPlayer> loadPlayer(UUID playerId, String playerName) {
         return CompletableFuture.supplyAsync(() -> {
             // Get the player if they exist, otherwise create a new one and store it.
             return database.computeIfAbsent(playerId, k -> new SocialPlayer(playerId, playerName));
-        });
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, SocialPlayer>> loadPlayers(Map<UUID, String> players) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<UUID, SocialPlayer> loaded = new HashMap<>(players.size() * 2);
+            players.forEach((playerId, playerName) -> loaded.put(playerId,
+                    database.computeIfAbsent(playerId, k -> new SocialPlayer(playerId, playerName))));
+            return loaded;
+        }, executor);
     }
 
     @Override
@@ -28,7 +48,102 @@ public class InMemoryStorage implements Storage {
         return CompletableFuture.runAsync(() -> {
             // In a real database this would be an UPDATE or INSERT statement.
             // Here, we just ensure the latest version of the object is in the map.
+            // Tracked changes are drained so they don't accumulate.
+            player.drainChanges();
+            player.consumeFullSync();
             database.put(player.getPlayerId(), player);
-        });
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> savePlayers(Collection<SocialPlayer> players) {
+        return CompletableFuture.runAsync(() -> {
+            for (SocialPlayer player : players) {
+                player.drainChanges();
+                player.consumeFullSync();
+                database.put(player.getPlayerId(), player);
+            }
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<UUID> findPlayerId(String playerName) {
+        return CompletableFuture.supplyAsync(() -> {
+            for (SocialPlayer player : database.values()) {
+                if (player.getPlayerName().equalsIgnoreCase(playerName)) {
+                    return player.getPlayerId();
+                }
+            }
+            return null;
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, String>> loadNames(Collection<UUID> playerIds) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<UUID, String> names = new HashMap<>(playerIds.size() * 2);
+            for (UUID playerId : playerIds) {
+                SocialPlayer player = database.get(playerId);
+                if (player != null) {
+                    names.put(playerId, player.getPlayerName());
+                }
+            }
+            return names;
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> createFriendship(UUID playerId, UUID friendId) {
+        return CompletableFuture.runAsync(() -> {
+            update(playerId, player -> player.addFriend(friendId));
+            update(friendId, friend -> friend.addFriend(playerId));
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteFriendship(UUID playerId, UUID friendId) {
+        return CompletableFuture.runAsync(() -> {
+            update(playerId, player -> player.removeFriend(friendId));
+            update(friendId, friend -> friend.removeFriend(playerId));
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> createRequest(UUID senderId, UUID receiverId) {
+        return CompletableFuture.runAsync(() -> {
+            update(senderId, sender -> sender.sendRequest(receiverId));
+            update(receiverId, receiver -> receiver.receiveRequest(senderId));
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> resolveRequest(UUID senderId, UUID receiverId, boolean accepted) {
+        return CompletableFuture.runAsync(() -> {
+            update(senderId, sender -> {
+                sender.cancelRequest(receiverId);
+                if (accepted) {
+                    sender.denyRequest(receiverId);
+                    sender.addFriend(receiverId);
+                }
+            });
+            update(receiverId, receiver -> {
+                receiver.denyRequest(senderId);
+                if (accepted) {
+                    receiver.cancelRequest(senderId);
+                    receiver.addFriend(senderId);
+                }
+            });
+        }, executor);
+    }
+
+    /**
+     * Applies a change to a stored player. The stored objects are shared with the
+     * player cache, so the change is usually already there and this is a no-op.
+     */
+    private void update(UUID playerId, Consumer<SocialPlayer> change) {
+        SocialPlayer player = database.get(playerId);
+        if (player != null) {
+            change.accept(player);
+        }
     }
 }
@@ -0,0 +1,252 @@
+package gc.grivyzom.gZSociety.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * A memory-mapped hash table from player UUID to the offset of their latest record in the log.
+ * Uses open addressing with linear probing; entries are never removed, only overwritten.
+ * <p>
+ * The index is only a cache of the log. It is flagged as unclean while open, so after a
+ * crash it is thrown away and rebuilt from the log instead of being trusted.
+ * Not thread-safe; {@link FileStorage} guards it with its lock.
+ */
+final class MappedUuidIndex implements Closeable {
+
+    private static final int MAGIC = 0x475A5349; // "GZSI"
+    private static final int FORMAT_VERSION = 1;
+
+    // Header layout
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_CAPACITY = 8;
+    private static final int HEADER_SIZE_FIELD = 12;
+    private static final int HEADER_COVERED = 16;
+    private static final int HEADER_CLEAN = 24;
+    private static final int HEADER_SIZE = 32;
+
+    // Slot layout: most significant bits, least significant bits, offset + 1 (0 = empty)
+    private static final int SLOT_SIZE = 24;
+    private static final int MIN_CAPACITY = 1024;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+
+    private final FileChannel channel;
+    private final boolean trusted;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    MappedUuidIndex(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        // The header is read without mapping, so an invalid file can still be truncated
+        // (a file cannot be truncated while it is mapped on Windows)
+        boolean valid = false;
+        boolean clean = false;
+        if (channel.size() >= HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    break;
+                }
+            }
+            int storedCapacity = header.getInt(HEADER_CAPACITY);
+            valid = header.getInt(HEADER_MAGIC) == MAGIC
+                    && header.getInt(HEADER_VERSION) == FORMAT_VERSION
+                    && Integer.bitCount(storedCapacity) == 1
+                    && channel.size() == HEADER_SIZE + (long) storedCapacity * SLOT_SIZE;
+            if (valid) {
+                this.capacity = storedCapacity;
+                this.size = header.getInt(HEADER_SIZE_FIELD);
+                clean = header.get(HEADER_CLEAN) == 1;
+            }
+        }
+        this.trusted = valid && clean;
+
+        if (valid) {
+            map(HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        } else {
+            channel.truncate(0);
+            resize(MIN_CAPACITY);
+        }
+        // Anything written from now on is only trustworthy after a clean close
+        buffer.put(HEADER_CLEAN, (byte) 0);
+        buffer.force();
+    }
+
+    /**
+     * Checks whether the index was closed cleanly and matches the log up to {@link #getCoveredLength()}.
+     */
+    boolean isTrusted() {
+        return trusted;
+    }
+
+    /**
+     * Gets the length of the log the index entries account for.
+     */
+    long getCoveredLength() {
+        return buffer.getLong(HEADER_COVERED);
+    }
+
+    void setCoveredLength(long length) {
+        buffer.putLong(HEADER_COVERED, length);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the log offset of a player's latest record.
+     *
+     * @return The offset, or -1 if the player has no record.
+     */
+    long get(UUID playerId) {
+        long msb = playerId.getMostSignificantBits();
+        long lsb = playerId.getLeastSignificantBits();
+        int mask = capacity - 1;
+        for (int slot = hash(msb, lsb) & mask;; slot = (slot + 1) & mask) {
+            int position = slotPosition(slot);
+            long stored = buffer.getLong(position + 16);
+            if (stored == 0) {
+                return -1;
+            }
+            if (buffer.getLong(position) == msb && buffer.getLong(position + 8) == lsb) {
+                return stored - 1;
+            }
+        }
+    }
+
+    /**
+     * Points a player at a new record, adding them if needed.
+     */
+    void put(UUID playerId, long offset) throws IOException {
+        if (size + 1 > capacity * MAX_LOAD_FACTOR) {
+            resize(capacity * 2);
+        }
+        if (insert(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(), offset)) {
+            size++;
+            buffer.putInt(HEADER_SIZE_FIELD, size);
+        }
+    }
+
+    /**
+     * Removes every entry, keeping the current capacity.
+     */
+    void clear() {
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.putLong(slotPosition(slot) + 16, 0);
+        }
+        size = 0;
+        buffer.putInt(HEADER_SIZE_FIELD, 0);
+        setCoveredLength(0);
+    }
+
+    /**
+     * Visits every entry, in no particular order.
+     */
+    void forEach(EntryVisitor visitor) throws IOException {
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slotPosition(slot);
+            long stored = buffer.getLong(position + 16);
+            if (stored != 0) {
+                visitor.visit(new UUID(buffer.getLong(position), buffer.getLong(position + 8)), stored - 1);
+            }
+        }
+    }
+
+    /**
+     * Flushes the mapping and flags the index as clean, so the next start can trust it.
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        buffer.put(HEADER_CLEAN, (byte) 1);
+        buffer.force();
+        channel.close();
+    }
+
+    private boolean insert(long msb, long lsb, long offset) {
+        int mask = capacity - 1;
+        for (int slot = hash(msb, lsb) & mask;; slot = (slot + 1) & mask) {
+            int position = slotPosition(slot);
+            long stored = buffer.getLong(position + 16);
+            if (stored == 0) {
+                buffer.putLong(position, msb);
+                buffer.putLong(position + 8, lsb);
+                buffer.putLong(position + 16, offset + 1);
+                return true;
+            }
+            if (buffer.getLong(position) == msb && buffer.getLong(position + 8) == lsb) {
+                buffer.putLong(position + 16, offset + 1);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Grows the table in place. A crash halfway leaves the index unclean, so it is rebuilt.
+     * The file only ever grows while mapped, which every platform allows; the old mapping
+     * is dropped before the larger one is made.
+     */
+    private void resize(int newCapacity) throws IOException {
+        long[] entries = new long[size * 3];
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slotPosition(slot);
+            long stored = buffer.getLong(position + 16);
+            if (stored != 0) {
+                entries[count++] = buffer.getLong(position);
+                entries[count++] = buffer.getLong(position + 8);
+                entries[count++] = stored - 1;
+            }
+        }
+        long covered = capacity == 0 ? 0 : getCoveredLength();
+
+        long length = HEADER_SIZE + (long) newCapacity * SLOT_SIZE;
+        this.buffer = null;
+        channel.write(ByteBuffer.allocate(1), length - 1);
+        map(length);
+        buffer.putInt(HEADER_MAGIC, MAGIC);
+        buffer.putInt(HEADER_VERSION, FORMAT_VERSION);
+        buffer.putInt(HEADER_CAPACITY, newCapacity);
+        buffer.put(HEADER_CLEAN, (byte) 0);
+        this.capacity = newCapacity;
+        clear();
+        setCoveredLength(covered);
+
+        for (int i = 0; i < count; i += 3) {
+            insert(entries[i], entries[i + 1], entries[i + 2]);
+        }
+        this.size = count / 3;
+        buffer.putInt(HEADER_SIZE_FIELD, size);
+    }
+
+    private void map(long length) throws IOException {
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static int hash(long msb, long lsb) {
+        // Random UUIDs are already well distributed, the mix protects against sequential ones
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    interface EntryVisitor {
+        void visit(UUID playerId, long offset) throws IOException;
+    }
+}
@@ -0,0 +1,31 @@
+package gc.grivyzom.gZSociety.storage;
+
+import gc.grivyzom.gZSociety.objects.SocialPlayer;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown by a bulk save when only some of the players could not be saved.
+ * The other players of the batch were written.
+ */
+public class PartialSaveException extends RuntimeException {
+
+    private final Set<UUID> failedPlayerIds;
+
+    public PartialSaveException(String message, Collection<SocialPlayer> failedPlayers, Throwable cause) {
+        super(message, cause);
+        this.failedPlayerIds = failedPlayers.stream()
+                .map(SocialPlayer::getPlayerId)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Gets the players that were not saved. They kept their changes for the next save.
+     */
+    public Set<UUID> getFailedPlayerIds() {
+        return failedPlayerIds;
+    }
+}
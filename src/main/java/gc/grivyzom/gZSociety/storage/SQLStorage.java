@@ -2,7 +2,9 @@ package gc.grivyzom.gZSociety.storage;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import gc.grivyzom.gZSociety.objects.PendingChanges;
 import gc.grivyzom.gZSociety.objects.SocialPlayer;
+import org.slf4j.Logger;
 import org.spongepowered.configurate.ConfigurationNode;
 
 import java.sql.Connection;
@@ -10,15 +12,65 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class SQLStorage implements Storage {
 
+    // Row kinds returned by LOAD_PROFILE_SQL
+    private static final int ROW_SETTINGS = 0;
+    private static final int ROW_FRIEND = 1;
+    private static final int ROW_OUTGOING_REQUEST = 2;
+    private static final int ROW_INCOMING_REQUEST = 3;
+
+    // Settings, friends, outgoing and incoming requests of one player as a single result set
+    private static final String LOAD_PROFILE_SQL = "SELECT 0 AS kind, NULL AS other_uuid, "
+            + "notifications_enabled AS flag FROM gzs_players WHERE uuid = ? "
+            + "UNION ALL SELECT 1, friend_uuid, is_best_friend FROM gzs_friends WHERE player_uuid = ? "
+            + "UNION ALL SELECT 2, receiver_uuid, FALSE FROM gzs_friend_requests WHERE sender_uuid = ? "
+            + "UNION ALL SELECT 3, sender_uuid, FALSE FROM gzs_friend_requests WHERE receiver_uuid = ?";
+
+    static final String TEXT_UUID_TYPE = "VARCHAR(36)";
+    static final String COMPACT_UUID_TYPE = "BINARY(16)";
+
+    // Players per statement for bulk loads and saves, keeps IN lists and transactions bounded
+    private static final int BULK_CHUNK_SIZE = 500;
+
     private final HikariDataSource dataSource;
+    private final Executor executor;
+    private final Logger logger;
+
+    // How UUID columns are stored; switched at runtime by the online migration
+    private final boolean compactUuidsConfigured;
+    private volatile UuidFormat uuidFormat = UuidFormat.TEXT;
+    // Read-held by every operation, write-held across the migration's table swap and format switch
+    private final ReadWriteLock cutOverLock = new ReentrantReadWriteLock(true);
+    private final AtomicBoolean migrating = new AtomicBoolean(false);
+
+    // Metrics
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final AtomicLong loadMaxNanos = new AtomicLong();
+
+    public SQLStorage(ConfigurationNode dbConfig, Executor executor, Logger logger) {
+        this.executor = executor;
+        this.logger = logger;
+        this.compactUuidsConfigured = dbConfig.node("compact-uuids").getBoolean(false);
 
-    public SQLStorage(ConfigurationNode dbConfig) {
         HikariConfig config = new HikariConfig();
         config.setJdbcUrl("jdbc:mysql://" + dbConfig.node("host").getString() + ":" + dbConfig.node("port").getInt()
                 + "/" + dbConfig.node("database").getString());
@@ -35,45 +87,147 @@ public class SQLStorage implements Storage {
         config.addDataSourceProperty("cachePrepStmts", "true");
         config.addDataSourceProperty("prepStmtCacheSize", "250");
         config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        // Sends JDBC batches as multi-row statements
+        config.addDataSourceProperty("rewriteBatchedStatements", "true");
 
         this.dataSource = new HikariDataSource(config);
     }
 
-    public void initDatabase() {
+    public void initDatabase() throws SQLException {
         try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
-            // Player data table
-            stmt.execute("CREATE TABLE IF NOT EXISTS gzs_players ("
-                    + "uuid VARCHAR(36) NOT NULL PRIMARY KEY,"
-                    + "username VARCHAR(16) NOT NULL,"
-                    + "notifications_enabled BOOLEAN NOT NULL DEFAULT TRUE"
-                    + ");");
-
-            // Friends table (many-to-many relationship)
-            stmt.execute("CREATE TABLE IF NOT EXISTS gzs_friends ("
-                    + "player_uuid VARCHAR(36) NOT NULL,"
-                    + "friend_uuid VARCHAR(36) NOT NULL,"
-                    + "is_best_friend BOOLEAN NOT NULL DEFAULT FALSE,"
-                    + "PRIMARY KEY (player_uuid, friend_uuid),"
-                    + "FOREIGN KEY (player_uuid) REFERENCES gzs_players(uuid) ON DELETE CASCADE,"
-                    + "FOREIGN KEY (friend_uuid) REFERENCES gzs_players(uuid) ON DELETE CASCADE"
-                    + ");");
-
-            // Friend requests table
-            stmt.execute("CREATE TABLE IF NOT EXISTS gzs_friend_requests ("
-                    + "sender_uuid VARCHAR(36) NOT NULL,"
-                    + "receiver_uuid VARCHAR(36) NOT NULL,"
-                    + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
-                    + "PRIMARY KEY (sender_uuid, receiver_uuid),"
-                    + "FOREIGN KEY (sender_uuid) REFERENCES gzs_players(uuid) ON DELETE CASCADE,"
-                    + "FOREIGN KEY (receiver_uuid) REFERENCES gzs_players(uuid) ON DELETE CASCADE"
-                    + ");");
+            String existingType = getUuidColumnType(conn);
+            if (existingType == null) {
+                // Fresh install, use whichever layout is configured
+                uuidFormat = compactUuidsConfigured ? UuidFormat.COMPACT : UuidFormat.TEXT;
+            } else {
+                uuidFormat = existingType.equalsIgnoreCase("binary") ? UuidFormat.COMPACT : UuidFormat.TEXT;
+                if (compactUuidsConfigured && uuidFormat == UuidFormat.TEXT) {
+                    logger.warn("compact-uuids is enabled but the tables still store UUIDs as text. "
+                            + "Run /gzsociety migrate-uuids to convert them online.");
+                }
+            }
+
+            createTables(stmt, "", uuidFormat.columnType, true);
+            logger.info("Using {} UUID columns.", uuidFormat.columnType);
+
+            // Evolve the base tables to the latest schema version
+            new SchemaMigrator(logger).migrate(conn);
 
             // TODO: Add tables for ignored and blocked players
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
     }
 
+    /**
+     * Creates the plugin tables if they don't exist.
+     * This is the version 0 layout; later changes are applied by {@link SchemaMigrator}.
+     *
+     * @param suffix      Appended to every table name (used for migration staging tables).
+     * @param uuidType    The SQL column type for UUIDs.
+     * @param foreignKeys Whether to declare foreign keys to the players table.
+     */
+    static void createTables(Statement stmt, String suffix, String uuidType, boolean foreignKeys)
+            throws SQLException {
+        String players = "gzs_players" + suffix;
+
+        // Player data table
+        stmt.execute("CREATE TABLE IF NOT EXISTS " + players + " ("
+                + "uuid " + uuidType + " NOT NULL PRIMARY KEY,"
+                + "username VARCHAR(16) NOT NULL,"
+                + "notifications_enabled BOOLEAN NOT NULL DEFAULT TRUE"
+                + ");");
+
+        // Friends table (many-to-many relationship)
+        stmt.execute("CREATE TABLE IF NOT EXISTS gzs_friends" + suffix + " ("
+                + "player_uuid " + uuidType + " NOT NULL,"
+                + "friend_uuid " + uuidType + " NOT NULL,"
+                + "is_best_friend BOOLEAN NOT NULL DEFAULT FALSE,"
+                + "PRIMARY KEY (player_uuid, friend_uuid)"
+                + (foreignKeys
+                        ? ",FOREIGN KEY (player_uuid) REFERENCES " + players + "(uuid) ON DELETE CASCADE,"
+                                + "FOREIGN KEY (friend_uuid) REFERENCES " + players + "(uuid) ON DELETE CASCADE"
+                        : "")
+                + ");");
+
+        // Friend requests table
+        stmt.execute("CREATE TABLE IF NOT EXISTS gzs_friend_requests" + suffix + " ("
+                + "sender_uuid " + uuidType + " NOT NULL,"
+                + "receiver_uuid " + uuidType + " NOT NULL,"
+                + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                + "PRIMARY KEY (sender_uuid, receiver_uuid)"
+                + (foreignKeys
+                        ? ",FOREIGN KEY (sender_uuid) REFERENCES " + players + "(uuid) ON DELETE CASCADE,"
+                                + "FOREIGN KEY (receiver_uuid) REFERENCES " + players + "(uuid) ON DELETE CASCADE"
+                        : "")
+                + ");");
+    }
+
+    /**
+     * Looks up the column type of gzs_players.uuid.
+     *
+     * @return The data type (e.g. "varchar" or "binary"), or null if the table doesn't exist.
+     */
+    private static String getUuidColumnType(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT DATA_TYPE FROM information_schema.COLUMNS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'gzs_players' AND COLUMN_NAME = 'uuid'")) {
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Converts the tables to BINARY(16) UUIDs while the server keeps running.
+     * See {@link CompactUuidMigration} for how the conversion stays online.
+     *
+     * @param chunkSize How many players are copied per statement.
+     * @param progress  Receives human readable progress updates.
+     * @return A CompletableFuture that will complete once the new tables are live.
+     */
+    public CompletableFuture<Void> migrateToCompactUuids(int chunkSize, Consumer<String> progress) {
+        return CompletableFuture.runAsync(() -> {
+            if (uuidFormat == UuidFormat.COMPACT) {
+                throw new IllegalStateException("The tables already use BINARY(16) UUIDs.");
+            }
+            if (!migrating.compareAndSet(false, true)) {
+                throw new IllegalStateException("A UUID migration is already running.");
+            }
+            try {
+                new CompactUuidMigration(dataSource, chunkSize, progress)
+                        .run(cutOverLock.writeLock(), () -> uuidFormat = UuidFormat.COMPACT);
+                logger.info("UUID columns migrated to BINARY(16). The old tables were kept with a _legacy suffix.");
+            } catch (SQLException e) {
+                logger.error("UUID migration failed", e);
+                throw new RuntimeException("UUID migration failed: " + e.getMessage(), e);
+            } finally {
+                migrating.set(false);
+            }
+        }, runnable -> {
+            // Long-running admin job, kept off the storage pool
+            Thread thread = new Thread(runnable, "GZ-Society UUID Migration");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    public boolean isCompactUuids() {
+        return uuidFormat == UuidFormat.COMPACT;
+    }
+
+    /**
+     * Starts a storage operation. It runs with the UUID format returned here from start to end,
+     * and the migration cannot swap the tables until {@link #endOperation()} is called.
+     */
+    private UuidFormat beginOperation() {
+        cutOverLock.readLock().lock();
+        return uuidFormat;
+    }
+
+    private void endOperation() {
+        cutOverLock.readLock().unlock();
+    }
+
+    @Override
     public void close() {
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
@@ -83,94 +237,534 @@ public class SQLStorage implements Storage {
     @Override
     public CompletableFuture<SocialPlayer> loadPlayer(UUID playerId, String playerName) {
         return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            UuidFormat uuids = beginOperation();
             try (Connection conn = dataSource.getConnection()) {
                 // Ensure player exists in the main table (UPSERT)
                 try (PreparedStatement ps = conn.prepareStatement(
-                        "INSERT INTO gzs_players (uuid, username, notifications_enabled) VALUES (?, ?, TRUE) ON DUPLICATE KEY UPDATE username = ?")) {
-                    ps.setString(1, playerId.toString());
+                        "INSERT INTO gzs_players (uuid, username, notifications_enabled) VALUES (?, ?, TRUE) "
+                                + "ON DUPLICATE KEY UPDATE username = ?, last_seen = CURRENT_TIMESTAMP")) {
+                    uuids.bind(ps, 1, playerId);
                     ps.setString(2, playerName);
                     ps.setString(3, playerName);
                     ps.executeUpdate();
                 }
 
-                SocialPlayer socialPlayer = new SocialPlayer(playerId, playerName);
+                SocialPlayer.Builder builder = SocialPlayer.builder(playerId, playerName);
 
-                // Load notification preference
-                try (PreparedStatement ps = conn.prepareStatement(
-                        "SELECT notifications_enabled FROM gzs_players WHERE uuid = ?")) {
-                    ps.setString(1, playerId.toString());
+                // Load the rest of the profile in a single round-trip.
+                // Each row is tagged with the kind of relation it belongs to.
+                try (PreparedStatement ps = conn.prepareStatement(LOAD_PROFILE_SQL)) {
+                    for (int i = 1; i <= 4; i++) {
+                        uuids.bind(ps, i, playerId);
+                    }
                     try (ResultSet rs = ps.executeQuery()) {
-                        if (rs.next()) {
-                            socialPlayer.setNotificationsEnabled(rs.getBoolean("notifications_enabled"));
+                        while (rs.next()) {
+                            int kind = rs.getInt(1);
+                            UUID otherId = kind == ROW_SETTINGS ? null : uuids.read(rs, 2);
+                            applyProfileRow(builder, kind, otherId, rs.getBoolean(3));
                         }
                     }
                 }
 
-                // Load friends
-                try (PreparedStatement ps = conn.prepareStatement(
-                        "SELECT friend_uuid, is_best_friend FROM gzs_friends WHERE player_uuid = ?")) {
-                    ps.setString(1, playerId.toString());
-                    try (ResultSet rs = ps.executeQuery()) {
-                        while (rs.next()) {
-                            UUID friendId = UUID.fromString(rs.getString("friend_uuid"));
-                            socialPlayer.addFriend(friendId);
-                            if (rs.getBoolean("is_best_friend")) {
-                                socialPlayer.addBestFriend(friendId);
+                // TODO: Load ignored and blocked players
+                // The loaded state is exactly what is stored, nothing to persist yet
+                return builder.build();
+            } catch (SQLException e) {
+                logger.error("Failed to load player data for {}", playerName, e);
+                throw new RuntimeException("Failed to load player data for " + playerName, e);
+            } finally {
+                endOperation();
+                recordLoad(System.nanoTime() - start, 1);
+            }
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, SocialPlayer>> loadPlayers(Map<UUID, String> players) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<UUID, SocialPlayer.Builder> builders = new HashMap<>(players.size() * 2);
+            List<UUID> ids = new ArrayList<>(players.keySet());
+
+            UuidFormat uuids = beginOperation();
+            try (Connection conn = dataSource.getConnection()) {
+                for (int from = 0; from < ids.size(); from += BULK_CHUNK_SIZE) {
+                    long start = System.nanoTime();
+                    List<UUID> chunk = ids.subList(from, Math.min(ids.size(), from + BULK_CHUNK_SIZE));
+
+                    // Ensure every player exists in the main table (batched UPSERT)
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "INSERT INTO gzs_players (uuid, username, notifications_enabled) VALUES (?, ?, TRUE) "
+                                    + "AS new ON DUPLICATE KEY UPDATE username = new.username, "
+                                    + "last_seen = CURRENT_TIMESTAMP")) {
+                        for (UUID playerId : chunk) {
+                            uuids.bind(ps, 1, playerId);
+                            ps.setString(2, players.get(playerId));
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+
+                    for (UUID playerId : chunk) {
+                        builders.put(playerId, SocialPlayer.builder(playerId, players.get(playerId)));
+                    }
+
+                    // Same tagged query as a single load, with an extra owner column
+                    try (PreparedStatement ps = conn.prepareStatement(loadProfilesSql(chunk.size()))) {
+                        int index = 1;
+                        for (int part = 0; part < 4; part++) {
+                            for (UUID playerId : chunk) {
+                                uuids.bind(ps, index++, playerId);
+                            }
+                        }
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                int kind = rs.getInt(1);
+                                SocialPlayer.Builder owner = builders.get(uuids.read(rs, 2));
+                                UUID otherId = kind == ROW_SETTINGS ? null : uuids.read(rs, 3);
+                                applyProfileRow(owner, kind, otherId, rs.getBoolean(4));
                             }
                         }
                     }
+
+                    recordLoad(System.nanoTime() - start, chunk.size());
                 }
+            } catch (SQLException e) {
+                logger.error("Failed to load data for {} players", players.size(), e);
+                throw new RuntimeException("Failed to load data for " + players.size() + " players", e);
+            } finally {
+                endOperation();
+            }
 
-                // Load outgoing friend requests (I sent these)
-                try (PreparedStatement ps = conn.prepareStatement(
-                        "SELECT receiver_uuid FROM gzs_friend_requests WHERE sender_uuid = ?")) {
-                    ps.setString(1, playerId.toString());
-                    try (ResultSet rs = ps.executeQuery()) {
-                        while (rs.next()) {
-                            UUID receiverId = UUID.fromString(rs.getString("receiver_uuid"));
-                            socialPlayer.sendRequest(receiverId);
-                        }
+            // TODO: Load ignored and blocked players
+            Map<UUID, SocialPlayer> loaded = new HashMap<>(builders.size() * 2);
+            builders.forEach((playerId, builder) -> loaded.put(playerId, builder.build()));
+            return loaded;
+        }, executor);
+    }
+
+    private static String loadProfilesSql(int count) {
+        String in = "(" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+        return "SELECT 0 AS kind, uuid AS owner_uuid, NULL AS other_uuid, notifications_enabled AS flag "
+                + "FROM gzs_players WHERE uuid IN " + in
+                + " UNION ALL SELECT 1, player_uuid, friend_uuid, is_best_friend FROM gzs_friends "
+                + "WHERE player_uuid IN " + in
+                + " UNION ALL SELECT 2, sender_uuid, receiver_uuid, FALSE FROM gzs_friend_requests "
+                + "WHERE sender_uuid IN " + in
+                + " UNION ALL SELECT 3, receiver_uuid, sender_uuid, FALSE FROM gzs_friend_requests "
+                + "WHERE receiver_uuid IN " + in;
+    }
+
+    /**
+     * Applies one row of a profile query to the player being loaded.
+     */
+    private static void applyProfileRow(SocialPlayer.Builder builder, int kind, UUID otherId, boolean flag) {
+        switch (kind) {
+            case ROW_SETTINGS -> builder.notificationsEnabled(flag);
+            case ROW_FRIEND -> builder.friend(otherId, flag);
+            // Outgoing friend requests (I sent these)
+            case ROW_OUTGOING_REQUEST -> builder.outgoingRequest(otherId);
+            // Incoming friend requests (received from others)
+            case ROW_INCOMING_REQUEST -> builder.incomingRequest(otherId);
+            default -> {
+            }
+        }
+    }
+
+    private void recordLoad(long elapsedNanos, int players) {
+        loadCount.add(players);
+        loadNanos.add(elapsedNanos);
+        loadMaxNanos.accumulateAndGet(elapsedNanos, Math::max);
+    }
+
+    // --- Metrics ---
+
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    /**
+     * Average time spent loading a player, in milliseconds.
+     */
+    public double getAverageLoadMillis() {
+        long count = loadCount.sum();
+        return count == 0 ? 0 : loadNanos.sum() / (double) count / 1_000_000.0;
+    }
+
+    /**
+     * Slowest player load (or bulk load chunk) seen so far, in milliseconds.
+     */
+    public double getMaxLoadMillis() {
+        return loadMaxNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public CompletableFuture<Void> savePlayer(SocialPlayer player) {
+        return savePlayers(List.of(player));
+    }
+
+    @Override
+    public CompletableFuture<Void> savePlayers(Collection<SocialPlayer> players) {
+        return CompletableFuture.runAsync(() -> {
+            List<SocialPlayer> list = new ArrayList<>(players);
+            List<SocialPlayer> failed = new ArrayList<>();
+            SQLException failure = null;
+            UuidFormat uuids = beginOperation();
+            try {
+                for (int from = 0; from < list.size(); from += BULK_CHUNK_SIZE) {
+                    // Keep going, the failed players keep their changes for the next save
+                    List<SocialPlayer> chunk = list.subList(from, Math.min(list.size(), from + BULK_CHUNK_SIZE));
+                    SQLException chunkFailure = saveChunk(chunk, failed, uuids);
+                    if (chunkFailure != null) {
+                        failure = chunkFailure;
                     }
                 }
+            } finally {
+                endOperation();
+            }
 
-                // Load incoming friend requests (received from others)
-                try (PreparedStatement ps = conn.prepareStatement(
-                        "SELECT sender_uuid FROM gzs_friend_requests WHERE receiver_uuid = ?")) {
-                    ps.setString(1, playerId.toString());
-                    try (ResultSet rs = ps.executeQuery()) {
-                        while (rs.next()) {
-                            UUID senderId = UUID.fromString(rs.getString("sender_uuid"));
-                            socialPlayer.receiveRequest(senderId);
+            if (failure != null) {
+                String target = failed.size() == 1 ? failed.get(0).getPlayerName() : failed.size() + " players";
+                logger.error("Failed to save player data for {}", target, failure);
+                throw new PartialSaveException("Failed to save player data for " + target, failed, failure);
+            }
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<UUID> findPlayerId(String playerName) {
+        return CompletableFuture.supplyAsync(() -> {
+            // Uses idx_players_username; the default collation compares case-insensitively.
+            // A name can be held by several players over time, the one seen last has it now.
+            UuidFormat uuids = beginOperation();
+            try (Connection conn = dataSource.getConnection();
+                    PreparedStatement ps = conn.prepareStatement(
+                            "SELECT uuid FROM gzs_players WHERE username = ? ORDER BY last_seen DESC, uuid LIMIT 1")) {
+                ps.setString(1, playerName);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? uuids.read(rs, 1) : null;
+                }
+            } catch (SQLException e) {
+                logger.error("Failed to look up player {}", playerName, e);
+                throw new RuntimeException("Failed to look up player " + playerName, e);
+            } finally {
+                endOperation();
+            }
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, String>> loadNames(Collection<UUID> playerIds) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<UUID, String> names = new HashMap<>(playerIds.size() * 2);
+            List<UUID> ids = new ArrayList<>(playerIds);
+
+            UuidFormat uuids = beginOperation();
+            try (Connection conn = dataSource.getConnection()) {
+                for (int from = 0; from < ids.size(); from += BULK_CHUNK_SIZE) {
+                    List<UUID> chunk = ids.subList(from, Math.min(ids.size(), from + BULK_CHUNK_SIZE));
+                    try (PreparedStatement ps = conn.prepareStatement("SELECT uuid, username FROM gzs_players "
+                            + "WHERE uuid IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")")) {
+                        int index = 1;
+                        for (UUID playerId : chunk) {
+                            uuids.bind(ps, index++, playerId);
+                        }
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                names.put(uuids.read(rs, 1), rs.getString(2));
+                            }
                         }
                     }
                 }
-
-                // TODO: Load ignored and blocked players
-                return socialPlayer;
             } catch (SQLException e) {
-                e.printStackTrace();
-                throw new RuntimeException("Failed to load player data for " + playerName, e);
+                logger.error("Failed to load names of {} players", playerIds.size(), e);
+                throw new RuntimeException("Failed to load names of " + playerIds.size() + " players", e);
+            } finally {
+                endOperation();
+            }
+            return names;
+        }, executor);
+    }
+
+    // --- Relationship operations ---
+
+    @Override
+    public CompletableFuture<Void> createFriendship(UUID playerId, UUID friendId) {
+        return runInTransaction("create friendship",
+                (conn, uuids) -> insertFriendship(conn, uuids, playerId, friendId));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteFriendship(UUID playerId, UUID friendId) {
+        return runInTransaction("delete friendship", (conn, uuids) -> {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM gzs_friends "
+                    + "WHERE (player_uuid = ? AND friend_uuid = ?) OR (player_uuid = ? AND friend_uuid = ?)")) {
+                bindBothDirections(ps, uuids, playerId, friendId);
+                ps.executeUpdate();
             }
         });
     }
 
     @Override
-    public CompletableFuture<Void> savePlayer(SocialPlayer player) {
+    public CompletableFuture<Void> createRequest(UUID senderId, UUID receiverId) {
+        return runInTransaction("create friend request", (conn, uuids) -> {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT IGNORE INTO gzs_friend_requests (sender_uuid, receiver_uuid) VALUES (?, ?)")) {
+                uuids.bind(ps, 1, senderId);
+                uuids.bind(ps, 2, receiverId);
+                ps.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> resolveRequest(UUID senderId, UUID receiverId, boolean accepted) {
+        return runInTransaction("resolve friend request", (conn, uuids) -> {
+            if (accepted) {
+                // A crossed request is settled by the friendship too
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM gzs_friend_requests "
+                        + "WHERE (sender_uuid = ? AND receiver_uuid = ?) OR (sender_uuid = ? AND receiver_uuid = ?)")) {
+                    bindBothDirections(ps, uuids, senderId, receiverId);
+                    ps.executeUpdate();
+                }
+                insertFriendship(conn, uuids, senderId, receiverId);
+            } else {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "DELETE FROM gzs_friend_requests WHERE sender_uuid = ? AND receiver_uuid = ?")) {
+                    uuids.bind(ps, 1, senderId);
+                    uuids.bind(ps, 2, receiverId);
+                    ps.executeUpdate();
+                }
+            }
+        });
+    }
+
+    private void insertFriendship(Connection conn, UuidFormat uuids, UUID playerId, UUID friendId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("INSERT IGNORE INTO gzs_friends "
+                + "(player_uuid, friend_uuid, is_best_friend) VALUES (?, ?, FALSE), (?, ?, FALSE)")) {
+            bindBothDirections(ps, uuids, playerId, friendId);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void bindBothDirections(PreparedStatement ps, UuidFormat uuids, UUID first, UUID second)
+            throws SQLException {
+        uuids.bind(ps, 1, first);
+        uuids.bind(ps, 2, second);
+        uuids.bind(ps, 3, second);
+        uuids.bind(ps, 4, first);
+    }
+
+    /**
+     * Runs some statements asynchronously in a single transaction.
+     *
+     * @param action Describes the work for the error message.
+     */
+    private CompletableFuture<Void> runInTransaction(String action, TransactionWork work) {
         return CompletableFuture.runAsync(() -> {
+            UuidFormat uuids = beginOperation();
             try (Connection conn = dataSource.getConnection()) {
-                String playerUuid = player.getPlayerId().toString();
+                conn.setAutoCommit(false);
+                try {
+                    work.run(conn, uuids);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Failed to {}", action, e);
+                throw new RuntimeException("Failed to " + action, e);
+            } finally {
+                endOperation();
+            }
+        }, executor);
+    }
+
+    /**
+     * Saves a chunk of players. Tracked changes of all of them are written with
+     * JDBC batches in a single transaction; players that need a full rewrite are
+     * handled one by one. If the transaction fails, each player is saved on its own
+     * so one bad row does not hold back the rest of the chunk.
+     *
+     * @param failed Receives the players that could not be saved.
+     * @return The last error, or null if every player was saved.
+     */
+    private SQLException saveChunk(List<SocialPlayer> players, List<SocialPlayer> failed, UuidFormat uuids) {
+        List<SocialPlayer> fullSync = new ArrayList<>();
+        List<PlayerDelta> deltas = new ArrayList<>(players.size());
+        for (SocialPlayer player : players) {
+            if (player.consumeFullSync()) {
+                // Everything is rewritten, so tracked changes are already covered
+                player.drainChanges();
+                fullSync.add(player);
+                continue;
+            }
+            PendingChanges changes = player.drainChanges();
+            if (!changes.isEmpty()) {
+                deltas.add(new PlayerDelta(player, changes));
+            }
+        }
+
+        SQLException failure = null;
+        if (!deltas.isEmpty()) {
+            try {
+                saveChanges(deltas, uuids);
+            } catch (SQLException e) {
+                if (deltas.size() == 1) {
+                    deltas.get(0).player.restoreChanges(deltas.get(0).changes);
+                    failed.add(deltas.get(0).player);
+                    failure = e;
+                } else {
+                    logger.warn("Bulk save of {} players failed, saving them one by one", deltas.size(), e);
+                    for (PlayerDelta delta : deltas) {
+                        try {
+                            saveChanges(List.of(delta), uuids);
+                        } catch (SQLException single) {
+                            delta.player.restoreChanges(delta.changes);
+                            failed.add(delta.player);
+                            failure = single;
+                        }
+                    }
+                }
+            }
+        }
+
+        for (SocialPlayer player : fullSync) {
+            try {
+                saveFullPlayer(player, uuids);
+            } catch (SQLException e) {
+                player.requireFullSync();
+                failed.add(player);
+                failure = e;
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Persists only the rows that changed since the last save, in a single transaction.
+     */
+    private void saveChanges(List<PlayerDelta> deltas, UuidFormat uuids) throws SQLException {
+        List<SocialPlayer> settings = new ArrayList<>();
+        List<RelationRow> upsertedFriends = new ArrayList<>();
+        List<RelationRow> removedFriends = new ArrayList<>();
+        List<RelationRow> addedRequests = new ArrayList<>();
+        List<RelationRow> removedRequests = new ArrayList<>();
+
+        for (PlayerDelta delta : deltas) {
+            UUID playerId = delta.player.getPlayerId();
+            PendingChanges changes = delta.changes;
+            if (changes.isSettingsChanged()) {
+                settings.add(delta.player);
+            }
+            for (Map.Entry<UUID, Boolean> entry : changes.getUpsertedFriends().entrySet()) {
+                upsertedFriends.add(new RelationRow(playerId, entry.getKey(), entry.getValue()));
+            }
+            for (UUID friendId : changes.getRemovedFriends()) {
+                removedFriends.add(new RelationRow(playerId, friendId, false));
+            }
+            for (UUID receiverId : changes.getAddedRequests()) {
+                addedRequests.add(new RelationRow(playerId, receiverId, false));
+            }
+            for (UUID receiverId : changes.getRemovedRequests()) {
+                removedRequests.add(new RelationRow(playerId, receiverId, false));
+            }
+            // Incoming requests are the senders' rows
+            for (UUID senderId : changes.getAddedIncomingRequests()) {
+                addedRequests.add(new RelationRow(senderId, playerId, false));
+            }
+            for (UUID senderId : changes.getRemovedIncomingRequests()) {
+                removedRequests.add(new RelationRow(senderId, playerId, false));
+            }
+        }
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                executeBatch(conn, "UPDATE gzs_players SET notifications_enabled = ? WHERE uuid = ?", settings,
+                        (ps, player) -> {
+                            ps.setBoolean(1, player.isNotificationsEnabled());
+                            uuids.bind(ps, 2, player.getPlayerId());
+                        });
+
+                // Added friends and best-friend flag changes
+                executeBatch(conn, "INSERT INTO gzs_friends (player_uuid, friend_uuid, is_best_friend) "
+                        + "VALUES (?, ?, ?) AS new ON DUPLICATE KEY UPDATE is_best_friend = new.is_best_friend",
+                        upsertedFriends,
+                        (ps, row) -> {
+                            uuids.bind(ps, 1, row.owner);
+                            uuids.bind(ps, 2, row.other);
+                            ps.setBoolean(3, row.flag);
+                        });
+
+                // Removed friends
+                executeBatch(conn, "DELETE FROM gzs_friends WHERE player_uuid = ? AND friend_uuid = ?",
+                        removedFriends, (ps, row) -> bindPair(ps, uuids, row));
+
+                // New friend requests
+                executeBatch(conn, "INSERT IGNORE INTO gzs_friend_requests (sender_uuid, receiver_uuid) VALUES (?, ?)",
+                        addedRequests, (ps, row) -> bindPair(ps, uuids, row));
+
+                // Friend requests that are gone (cancelled, accepted, denied or dropped)
+                executeBatch(conn, "DELETE FROM gzs_friend_requests WHERE sender_uuid = ? AND receiver_uuid = ?",
+                        removedRequests, (ps, row) -> bindPair(ps, uuids, row));
+
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void bindPair(PreparedStatement ps, UuidFormat uuids, RelationRow row) throws SQLException {
+        uuids.bind(ps, 1, row.owner);
+        uuids.bind(ps, 2, row.other);
+    }
+
+    /**
+     * Runs a statement once per row as a single JDBC batch. Does nothing if there are no rows.
+     */
+    private static <T> void executeBatch(Connection conn, String sql, List<T> rows, RowBinder<T> binder)
+            throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (T row : rows) {
+                binder.bind(ps, row);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Rewrites the whole profile (delete and re-insert).
+     * Only used as a fallback to reconcile storage with the in-memory state.
+     */
+    private void saveFullPlayer(SocialPlayer player, UuidFormat uuids) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                UUID playerId = player.getPlayerId();
 
                 // Update notification preference
                 try (PreparedStatement ps = conn.prepareStatement(
                         "UPDATE gzs_players SET notifications_enabled = ? WHERE uuid = ?")) {
                     ps.setBoolean(1, player.isNotificationsEnabled());
-                    ps.setString(2, playerUuid);
+                    uuids.bind(ps, 2, playerId);
                     ps.executeUpdate();
                 }
 
                 // Clear existing friend relationships
                 try (PreparedStatement ps = conn.prepareStatement("DELETE FROM gzs_friends WHERE player_uuid = ?")) {
-                    ps.setString(1, playerUuid);
+                    uuids.bind(ps, 1, playerId);
                     ps.executeUpdate();
                 }
 
@@ -184,8 +778,8 @@ public class SQLStorage implements Storage {
                     try (PreparedStatement ps = conn.prepareStatement(friendsSql)) {
                         int i = 1;
                         for (UUID friendId : player.getFriends()) {
-                            ps.setString(i++, playerUuid);
-                            ps.setString(i++, friendId.toString());
+                            uuids.bind(ps, i++, playerId);
+                            uuids.bind(ps, i++, friendId);
                             ps.setBoolean(i++, player.getBestFriends().contains(friendId));
                         }
                         ps.executeUpdate();
@@ -195,7 +789,7 @@ public class SQLStorage implements Storage {
                 // Clear existing outgoing friend requests from this player
                 try (PreparedStatement ps = conn
                         .prepareStatement("DELETE FROM gzs_friend_requests WHERE sender_uuid = ?")) {
-                    ps.setString(1, playerUuid);
+                    uuids.bind(ps, 1, playerId);
                     ps.executeUpdate();
                 }
 
@@ -209,18 +803,78 @@ public class SQLStorage implements Storage {
                     try (PreparedStatement ps = conn.prepareStatement(requestsSql)) {
                         int i = 1;
                         for (UUID receiverId : player.getOutgoingRequests()) {
-                            ps.setString(i++, playerUuid);
-                            ps.setString(i++, receiverId.toString());
+                            uuids.bind(ps, i++, playerId);
+                            uuids.bind(ps, i++, receiverId);
                         }
                         ps.executeUpdate();
                     }
                 }
 
                 // TODO: Save ignored and blocked players
+                conn.commit();
             } catch (SQLException e) {
-                e.printStackTrace();
-                throw new RuntimeException("Failed to save player data for " + player.getPlayerName(), e);
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-        });
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowBinder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface TransactionWork {
+        void run(Connection conn, UuidFormat uuids) throws SQLException;
+    }
+
+    private record PlayerDelta(SocialPlayer player, PendingChanges changes) {
+    }
+
+    /**
+     * How UUIDs are stored in the plugin's columns.
+     */
+    private enum UuidFormat {
+        TEXT(TEXT_UUID_TYPE) {
+            @Override
+            void bind(PreparedStatement ps, int index, UUID uuid) throws SQLException {
+                ps.setString(index, uuid.toString());
+            }
+
+            @Override
+            UUID read(ResultSet rs, int column) throws SQLException {
+                return UUID.fromString(rs.getString(column));
+            }
+        },
+        COMPACT(COMPACT_UUID_TYPE) {
+            @Override
+            void bind(PreparedStatement ps, int index, UUID uuid) throws SQLException {
+                ps.setBytes(index, UuidCodec.toBytes(uuid));
+            }
+
+            @Override
+            UUID read(ResultSet rs, int column) throws SQLException {
+                return UuidCodec.fromBytes(rs.getBytes(column));
+            }
+        };
+
+        private final String columnType;
+
+        UuidFormat(String columnType) {
+            this.columnType = columnType;
+        }
+
+        abstract void bind(PreparedStatement ps, int index, UUID uuid) throws SQLException;
+
+        abstract UUID read(ResultSet rs, int column) throws SQLException;
+    }
+
+    /**
+     * A row of gzs_friends or gzs_friend_requests, seen from its owning player.
+     */
+    private record RelationRow(UUID owner, UUID other, boolean flag) {
     }
 }
@@ -0,0 +1,36 @@
+package gc.grivyzom.gZSociety.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single, versioned schema change.
+ * Statements refer to tables through the {players}, {friends} and {requests}
+ * placeholders, so the same change can be applied to staging tables too.
+ *
+ * @param version     The schema version this migration brings the database to.
+ * @param description A short human readable summary, stored in gzs_schema.
+ * @param statements  The SQL statements to run, in order.
+ */
+record SchemaMigration(int version, String description, List<String> statements) {
+
+    SchemaMigration(int version, String description, String... statements) {
+        this(version, description, List.of(statements));
+    }
+
+    /**
+     * Gets the statements with the table placeholders resolved.
+     *
+     * @param tableSuffix Appended to every table name (empty for the live tables).
+     */
+    List<String> resolve(String tableSuffix) {
+        List<String> resolved = new ArrayList<>(statements.size());
+        for (String statement : statements) {
+            resolved.add(statement
+                    .replace("{players}", "gzs_players" + tableSuffix)
+                    .replace("{friends}", "gzs_friends" + tableSuffix)
+                    .replace("{requests}", "gzs_friend_requests" + tableSuffix));
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,139 @@
+package gc.grivyzom.gZSociety.storage;
+
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date by running versioned migrations in order.
+ * The applied versions are recorded in the gzs_schema table.
+ */
+final class SchemaMigrator {
+
+    // MySQL error codes for "Duplicate column name" and "Duplicate key name",
+    // i.e. the column or index a migration adds already exists
+    private static final int ER_DUP_FIELDNAME = 1060;
+    private static final int ER_DUP_KEYNAME = 1061;
+    private static final String LOCK_NAME = "gzs_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 30;
+
+    /**
+     * All migrations, in version order. Never edit a released migration; add a new one instead.
+     */
+    static final List<SchemaMigration> MIGRATIONS = List.of(
+            new SchemaMigration(1, "Secondary indexes for incoming requests and reverse friend lookups",
+                    // Incoming requests are looked up by receiver, which is not the leading PK column
+                    "ALTER TABLE {requests} ADD INDEX idx_requests_receiver (receiver_uuid, sender_uuid)",
+                    // "Who has X as a friend", covering the best-friend flag
+                    "ALTER TABLE {friends} ADD INDEX idx_friends_reverse (friend_uuid, player_uuid, is_best_friend)"),
+            new SchemaMigration(2, "Index player names for offline name lookups",
+                    // Case-insensitive through the column collation
+                    "ALTER TABLE {players} ADD INDEX idx_players_username (username)"),
+            new SchemaMigration(3, "Track when players were last seen, to pick the latest holder of a name",
+                    "ALTER TABLE {players} ADD COLUMN last_seen TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP"));
+
+    private final Logger logger;
+
+    SchemaMigrator(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Applies every migration newer than the recorded schema version.
+     * A named lock keeps several proxies sharing the database from migrating at once.
+     */
+    void migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS gzs_schema ("
+                    + "version INT NOT NULL PRIMARY KEY,"
+                    + "description VARCHAR(255) NOT NULL,"
+                    + "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP"
+                    + ");");
+        }
+
+        acquireLock(conn);
+        try {
+            int current = getCurrentVersion(conn);
+            for (SchemaMigration migration : MIGRATIONS) {
+                if (migration.version() <= current) {
+                    continue;
+                }
+
+                logger.info("Applying schema migration {}: {}", migration.version(), migration.description());
+                try (Statement stmt = conn.createStatement()) {
+                    for (String sql : migration.resolve("")) {
+                        execute(stmt, sql);
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO gzs_schema (version, description) VALUES (?, ?)")) {
+                    ps.setInt(1, migration.version());
+                    ps.setString(2, migration.description());
+                    ps.executeUpdate();
+                }
+                current = migration.version();
+            }
+            logger.info("Database schema is at version {}.", current);
+        } finally {
+            releaseLock(conn);
+        }
+    }
+
+    /**
+     * Applies every migration to a set of staging tables, so they match the live schema.
+     *
+     * @param tableSuffix The suffix of the staging tables.
+     */
+    static void applyAll(Statement stmt, String tableSuffix) throws SQLException {
+        for (SchemaMigration migration : MIGRATIONS) {
+            for (String sql : migration.resolve(tableSuffix)) {
+                execute(stmt, sql);
+            }
+        }
+    }
+
+    /**
+     * Runs a DDL statement. DDL is not transactional in MySQL, so a migration that
+     * failed halfway may be retried; columns and indexes that already exist are skipped.
+     */
+    private static void execute(Statement stmt, String sql) throws SQLException {
+        try {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ER_DUP_FIELDNAME && e.getErrorCode() != ER_DUP_KEYNAME) {
+                throw e;
+            }
+        }
+    }
+
+    private static int getCurrentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM gzs_schema")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for the schema migration lock");
+                }
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        }
+    }
+}
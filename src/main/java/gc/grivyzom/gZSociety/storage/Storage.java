@@ -2,6 +2,8 @@ package gc.grivyzom.gZSociety.storage;
 
 import gc.grivyzom.gZSociety.objects.SocialPlayer;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -29,4 +31,117 @@ public interface Storage {
      */
     CompletableFuture<Void> savePlayer(SocialPlayer player);
 
+    /**
+     * Loads the social data of several players at once, using as few queries as possible.
+     * Players that do not exist get a new default record, like in {@link #loadPlayer}.
+     *
+     * @param players The players to load, mapped from UUID to current name.
+     * @return A CompletableFuture that will complete with the loaded players, keyed by UUID.
+     */
+    CompletableFuture<Map<UUID, SocialPlayer>> loadPlayers(Map<UUID, String> players);
+
+    /**
+     * Saves the social data of several players at once, using batched writes.
+     *
+     * @param players The SocialPlayer objects to save.
+     * @return A CompletableFuture that will complete when all players are saved.
+     */
+    CompletableFuture<Void> savePlayers(Collection<SocialPlayer> players);
+
+    /**
+     * Looks up a player who joined before by their last known name, ignoring case.
+     * Used to reach offline players without loading their profile.
+     *
+     * @param playerName The name to look up.
+     * @return A CompletableFuture that will complete with the UUID, or null if no player has that name.
+     */
+    CompletableFuture<UUID> findPlayerId(String playerName);
+
+    /**
+     * Looks up the last known names of several players at once, without loading their profiles.
+     *
+     * @param playerIds The players to look up.
+     * @return A CompletableFuture that will complete with the names, keyed by UUID. Unknown players are left out.
+     */
+    CompletableFuture<Map<UUID, String>> loadNames(Collection<UUID> playerIds);
+
+    // --- Relationship operations ---
+    // Each one updates the rows of both players in a single atomic write,
+    // without rewriting either profile.
+
+    /**
+     * Makes two players friends of each other. Existing best-friend flags are kept.
+     *
+     * @return A CompletableFuture that will complete when both sides are persisted.
+     */
+    CompletableFuture<Void> createFriendship(UUID playerId, UUID friendId);
+
+    /**
+     * Removes a friendship from both sides, including any best-friend flags.
+     *
+     * @return A CompletableFuture that will complete when both sides are persisted.
+     */
+    CompletableFuture<Void> deleteFriendship(UUID playerId, UUID friendId);
+
+    /**
+     * Records a friend request, which shows up as outgoing for the sender and incoming for the receiver.
+     *
+     * @return A CompletableFuture that will complete when the request is persisted.
+     */
+    CompletableFuture<Void> createRequest(UUID senderId, UUID receiverId);
+
+    /**
+     * Removes a friend request and, if it was accepted, makes both players friends.
+     * Accepting also removes a crossed request from the receiver to the sender, if there is one.
+     *
+     * @param accepted true if the request was accepted, false if it was denied or cancelled.
+     * @return A CompletableFuture that will complete when both sides are persisted.
+     */
+    CompletableFuture<Void> resolveRequest(UUID senderId, UUID receiverId, boolean accepted);
+
+    /**
+     * Forces any buffered writes for a player to be persisted right away.
+     * Implementations that write through immediately have nothing to flush.
+     *
+     * @param playerId The UUID of the player to flush.
+     * @return A CompletableFuture that will complete when the player's pending writes are persisted.
+     */
+    default CompletableFuture<Void> flush(UUID playerId) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Forces all buffered writes to be persisted right away.
+     *
+     * @return A CompletableFuture that will complete when every pending write is persisted.
+     */
+    default CompletableFuture<Void> flushAll() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Forces all buffered writes to be persisted right away, in bulk saves of at most the given size.
+     *
+     * @param batchSize How many players each bulk save writes.
+     * @return A CompletableFuture that will complete when every pending write is persisted.
+     */
+    default CompletableFuture<Void> flushAll(int batchSize) {
+        return flushAll();
+    }
+
+    /**
+     * Releases any resources held by this storage (connection pools, threads, files).
+     */
+    default void close() {
+    }
+
+    /**
+     * Releases any resources held by this storage, waiting at most the given time for buffered writes.
+     *
+     * @param timeoutMillis How long buffered writes may take before they are abandoned.
+     */
+    default void close(long timeoutMillis) {
+        close();
+    }
+
 }
@@ -0,0 +1,152 @@
+package gc.grivyzom.gZSociety.storage;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The executor all blocking storage work runs on.
+ * Keeps JDBC and file I/O off the shared ForkJoin common pool, so a stalled
+ * database cannot starve other plugins running in the same proxy.
+ * Tracks how many tasks are waiting and how long they waited before running.
+ */
+public class StorageExecutor implements Executor {
+
+    private final ExecutorService delegate;
+    private final String description;
+
+    // Metrics
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private StorageExecutor(ExecutorService delegate, String description) {
+        this.delegate = delegate;
+        this.description = description;
+    }
+
+    /**
+     * Creates the executor described by the storage-executor config section.
+     *
+     * @param type    "platform" for a fixed thread pool, "virtual" for a virtual thread per task.
+     * @param threads The pool size for platform threads.
+     * @param logger  Used to warn when virtual threads are not available.
+     */
+    public static StorageExecutor create(String type, int threads, Logger logger) {
+        if (type.equalsIgnoreCase("virtual")) {
+            ExecutorService virtual = createVirtualThreadExecutor();
+            if (virtual != null) {
+                return new StorageExecutor(virtual, "virtual threads");
+            }
+            logger.warn("Virtual threads require Java 21 or newer, falling back to a platform thread pool.");
+        }
+
+        int size = Math.max(1, threads);
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "GZ-Society Storage #" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return new StorageExecutor(pool, size + " platform threads");
+    }
+
+    /**
+     * Looks up Executors.newVirtualThreadPerTaskExecutor() reflectively,
+     * since the plugin is compiled for Java 17.
+     *
+     * @return The executor, or null if the running JVM has no virtual threads.
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long submitted = System.nanoTime();
+        queued.incrementAndGet();
+        delegate.execute(() -> {
+            queued.decrementAndGet();
+            long waited = System.nanoTime() - submitted;
+            waitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                completed.increment();
+            }
+        });
+    }
+
+    /**
+     * Stops accepting tasks and waits for the running ones to finish.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(timeout, unit)) {
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- Metrics ---
+
+    /**
+     * Tasks submitted but not started yet.
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * Average time tasks waited in the queue before running, in milliseconds.
+     */
+    public double getAverageWaitMillis() {
+        long count = completed.sum() + active.get();
+        return count == 0 ? 0 : waitNanos.sum() / (double) count / 1_000_000.0;
+    }
+
+    /**
+     * Longest time a task waited in the queue, in milliseconds.
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
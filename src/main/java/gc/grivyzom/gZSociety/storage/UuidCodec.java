@@ -0,0 +1,53 @@
+package gc.grivyzom.gZSociety.storage;
+
+import java.util.UUID;
+
+/**
+ * Encodes UUIDs as 16 big-endian bytes for BINARY(16) columns.
+ * Works directly on the two longs, so no intermediate strings or buffers are allocated.
+ */
+public final class UuidCodec {
+
+    private UuidCodec() {
+    }
+
+    /**
+     * Encodes a UUID into a new 16-byte array.
+     */
+    public static byte[] toBytes(UUID uuid) {
+        byte[] bytes = new byte[16];
+        writeLong(bytes, 0, uuid.getMostSignificantBits());
+        writeLong(bytes, 8, uuid.getLeastSignificantBits());
+        return bytes;
+    }
+
+    /**
+     * Decodes a UUID from a 16-byte array.
+     *
+     * @return The UUID, or null if the array is null.
+     */
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException("Expected 16 bytes for a UUID, got " + bytes.length);
+        }
+        return new UUID(readLong(bytes, 0), readLong(bytes, 8));
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
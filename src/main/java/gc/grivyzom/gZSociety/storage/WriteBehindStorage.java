@@ -0,0 +1,360 @@
+package gc.grivyzom.gZSociety.storage;
+
+import gc.grivyzom.gZSociety.objects.SocialPlayer;
+import org.slf4j.Logger;
+import org.spongepowered.configurate.ConfigurationNode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A write-behind layer that can wrap any {@link Storage}.
+ * Save requests only mark the player dirty and queue it; repeated saves of the
+ * same player inside the configured window are merged into a single write.
+ * Queued players are flushed in batches on a dedicated thread.
+ * <p>
+ * A failed save is queued again with an exponential backoff, and a flush stops at the first
+ * failed batch, so a storage outage does not turn into a retry loop on the flusher thread.
+ * When the delegate reports which players of a batch failed, only those are queued again.
+ * A player that keeps failing is dropped from the queue after {@value #MAX_ATTEMPTS} attempts;
+ * it stays dirty, so the next autosave or save request tries it again.
+ */
+public class WriteBehindStorage implements Storage {
+
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final Storage delegate;
+    private final Logger logger;
+    private final long windowMillis;
+    private final int batchSize;
+
+    private final ConcurrentMap<UUID, PendingSave> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    // Metrics
+    private final LongAdder savesRequested = new LongAdder();
+    private final LongAdder savesExecuted = new LongAdder();
+
+    public WriteBehindStorage(Storage delegate, ConfigurationNode settings, Logger logger) {
+        this.delegate = delegate;
+        this.logger = logger;
+        this.windowMillis = Math.max(50, settings.node("window-ms").getLong(2000));
+        this.batchSize = Math.max(1, settings.node("batch-size").getInt(50));
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GZ-Society Write-Behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushPending, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<SocialPlayer> loadPlayer(UUID playerId, String playerName) {
+        return delegate.loadPlayer(playerId, playerName);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, SocialPlayer>> loadPlayers(Map<UUID, String> players) {
+        return delegate.loadPlayers(players);
+    }
+
+    /**
+     * Queues the player to be saved on the next flush.
+     * If the player is already queued, the request is merged with the queued one.
+     * A player without changes to write is not queued.
+     */
+    @Override
+    public CompletableFuture<Void> savePlayer(SocialPlayer player) {
+        savesRequested.increment();
+        if (!player.hasTrackedChanges()) {
+            // A save queued before still completes once it is written
+            PendingSave queued = pending.get(player.getPlayerId());
+            return queued != null ? queued.future : CompletableFuture.completedFuture(null);
+        }
+        player.markDirty();
+        return pending.computeIfAbsent(player.getPlayerId(), id -> new PendingSave(player)).future;
+    }
+
+    @Override
+    public CompletableFuture<Void> savePlayers(Collection<SocialPlayer> players) {
+        List<CompletableFuture<Void>> saves = new ArrayList<>(players.size());
+        for (SocialPlayer player : players) {
+            saves.add(savePlayer(player));
+        }
+        return CompletableFuture.allOf(saves.toArray(new CompletableFuture[0]));
+    }
+
+    @Override
+    public CompletableFuture<UUID> findPlayerId(String playerName) {
+        return delegate.findPlayerId(playerName);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, String>> loadNames(Collection<UUID> playerIds) {
+        return delegate.loadNames(playerIds);
+    }
+
+    // Relationship operations are small and touch two players at once,
+    // so they are written through instead of being buffered.
+
+    @Override
+    public CompletableFuture<Void> createFriendship(UUID playerId, UUID friendId) {
+        return delegate.createFriendship(playerId, friendId);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteFriendship(UUID playerId, UUID friendId) {
+        return delegate.deleteFriendship(playerId, friendId);
+    }
+
+    @Override
+    public CompletableFuture<Void> createRequest(UUID senderId, UUID receiverId) {
+        return delegate.createRequest(senderId, receiverId);
+    }
+
+    @Override
+    public CompletableFuture<Void> resolveRequest(UUID senderId, UUID receiverId, boolean accepted) {
+        return delegate.resolveRequest(senderId, receiverId, accepted);
+    }
+
+    /**
+     * Writes the player's queued save right away, even if it is waiting out a backoff.
+     *
+     * @return A CompletableFuture that fails if the save did.
+     */
+    @Override
+    public CompletableFuture<Void> flush(UUID playerId) {
+        return CompletableFuture.supplyAsync(() -> {
+            PendingSave save = pending.remove(playerId);
+            if (save == null) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            writeBatch(List.of(save));
+            return save.future;
+        }, flusher).thenCompose(save -> save);
+    }
+
+    /**
+     * Writes everything queued right away. Unlike the periodic flush, the batches are
+     * written concurrently, each as its own bulk save on the delegate (and so its own connection).
+     */
+    @Override
+    public CompletableFuture<Void> flushAll() {
+        return flushAll(batchSize);
+    }
+
+    /**
+     * Writes everything queued right away, in batches of the given size instead of the configured one.
+     */
+    @Override
+    public CompletableFuture<Void> flushAll(int batchSize) {
+        return CompletableFuture.supplyAsync(() -> drainBatches(Math.max(1, batchSize)), flusher)
+                .thenCompose(batches -> CompletableFuture.allOf(batches.stream()
+                        .map(this::writeBatchAsync)
+                        .toArray(CompletableFuture[]::new)));
+    }
+
+    @Override
+    public void close() {
+        close(CLOSE_TIMEOUT_MILLIS);
+    }
+
+    @Override
+    public void close(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            flushAll().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Pending saves did not finish within {} ms, recent changes may be lost.", timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while flushing pending saves", e);
+        } catch (Exception e) {
+            logger.error("Failed to flush pending saves before closing storage", e);
+        }
+        flusher.shutdown();
+        // Whatever the flush left of the deadline is the delegate's
+        delegate.close(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+    }
+
+    /**
+     * Drains the due part of the queue in batches. Always runs on the flusher thread.
+     * Saves waiting out a backoff are left for a later window.
+     */
+    private void flushPending() {
+        try {
+            long now = System.nanoTime();
+            while (true) {
+                List<PendingSave> batch = new ArrayList<>(batchSize);
+                for (Map.Entry<UUID, PendingSave> entry : pending.entrySet()) {
+                    if (batch.size() == batchSize) {
+                        break;
+                    }
+                    if (entry.getValue().isDue(now) && pending.remove(entry.getKey(), entry.getValue())) {
+                        batch.add(entry.getValue());
+                    }
+                }
+                if (batch.isEmpty() || !writeBatch(batch)) {
+                    // Storage is failing; the rest waits for the next window instead of failing the same way
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Unexpected error while flushing pending saves", e);
+        }
+    }
+
+    /**
+     * Takes everything queued, split into batches.
+     */
+    private List<List<PendingSave>> drainBatches(int batchSize) {
+        List<List<PendingSave>> batches = new ArrayList<>();
+        List<PendingSave> batch = new ArrayList<>(batchSize);
+        Iterator<Map.Entry<UUID, PendingSave>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next().getValue());
+            iterator.remove();
+            if (batch.size() == batchSize) {
+                batches.add(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Writes a batch with a single bulk save on the delegate, waiting for it.
+     *
+     * @return true if the batch was written.
+     */
+    private boolean writeBatch(List<PendingSave> batch) {
+        return writeBatchAsync(batch).join();
+    }
+
+    /**
+     * Writes a batch with a single bulk save on the delegate.
+     * The futures of the saves in the batch complete either way, failed saves are queued again.
+     *
+     * @return A CompletableFuture that completes with whether the batch was written. It never fails.
+     */
+    private CompletableFuture<Boolean> writeBatchAsync(List<PendingSave> batch) {
+        List<PendingSave> dirty = new ArrayList<>(batch.size());
+        List<SocialPlayer> players = new ArrayList<>(batch.size());
+        for (PendingSave save : batch) {
+            if (save.player.markClean()) {
+                dirty.add(save);
+                players.add(save.player);
+            } else {
+                // Already persisted by an earlier write
+                save.future.complete(null);
+            }
+        }
+        if (players.isEmpty()) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        savesExecuted.add(players.size());
+        return delegate.savePlayers(players).handle((ignored, error) -> {
+            if (error == null) {
+                for (PendingSave save : dirty) {
+                    save.future.complete(null);
+                }
+                return true;
+            }
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            Set<UUID> failedIds = cause instanceof PartialSaveException partial ? partial.getFailedPlayerIds() : null;
+            int failedCount = failedIds != null ? failedIds.size() : players.size();
+            logger.warn("Failed to save {} players, they will be retried after a backoff", failedCount, error);
+            for (PendingSave save : dirty) {
+                if (failedIds != null && !failedIds.contains(save.player.getPlayerId())) {
+                    save.future.complete(null);
+                    continue;
+                }
+                requeue(save);
+                save.future.completeExceptionally(error);
+            }
+            // Some players were written, so storage itself is reachable
+            return failedCount < players.size();
+        });
+    }
+
+    /**
+     * Queues a failed save again, due after a backoff that doubles with every failed attempt.
+     * A save requested meanwhile is kept as it is and covers this one.
+     */
+    private void requeue(PendingSave failed) {
+        failed.player.markDirty();
+        int attempts = failed.attempts + 1;
+        if (attempts >= MAX_ATTEMPTS) {
+            logger.error("Giving up on saving {} after {} attempts, it will be saved again on its next save request",
+                    failed.player.getPlayerName(), attempts);
+            return;
+        }
+        long backoffMillis = Math.min(MAX_BACKOFF_MILLIS, windowMillis << Math.min(attempts - 1, 16));
+        pending.putIfAbsent(failed.player.getPlayerId(), new PendingSave(failed.player, attempts,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMillis)));
+    }
+
+    // --- Metrics ---
+
+    public long getSavesRequested() {
+        return savesRequested.sum();
+    }
+
+    public long getSavesExecuted() {
+        return savesExecuted.sum();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public Storage getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * A queued save and the future handed out to every caller that requested it.
+     */
+    private static final class PendingSave {
+        private final SocialPlayer player;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        // Failed attempts so far, and when the next one may run (System.nanoTime)
+        private final int attempts;
+        private final long notBeforeNanos;
+
+        private PendingSave(SocialPlayer player) {
+            this(player, 0, 0);
+        }
+
+        private PendingSave(SocialPlayer player, int attempts, long notBeforeNanos) {
+            this.player = player;
+            this.attempts = attempts;
+            this.notBeforeNanos = notBeforeNanos;
+        }
+
+        private boolean isDue(long now) {
+            return attempts == 0 || now - notBeforeNanos >= 0;
+        }
+    }
+}